@@ -0,0 +1,748 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Solves every puzzle in a dataset file with a three stage pipeline:
+ * one reader thread decoding puzzles into chunks, a pool of solver workers, and a writer emitting CSV rows
+ * (puzzle, solution, status, nanos, nodes) through a buffered FileChannel.
+ * Stages are connected by bounded queues, and a semaphore caps the number of chunks in flight so a slow
+ * chunk cannot make the writer's reorder buffer grow without bound. Rows are written in input order.
+ * Every few seconds the writer atomically replaces a checkpoint file next to the output, recording the highest
+ * contiguous row written, the counters, and the output offset, so an interrupted run can be resumed.
+ */
+public class BatchSolver {
+    public static final String ENGINE_AC3 = "ac3";
+    public static final String ENGINE_SAT = "sat";
+    public static final String ENGINE_BACKTRACKING = "backtracking";
+    public static final String[] ENGINES = { ENGINE_AC3, ENGINE_BACKTRACKING, ENGINE_SAT };
+
+    public static final byte STATUS_SOLVED = 0;
+    public static final byte STATUS_FAILED = 1;
+    public static final byte STATUS_INVALID = 2;
+    private static final String[] STATUS_NAMES = { "solved", "failed", "invalid" };
+
+    public static final int DEFAULT_CHUNK_SIZE = 4096;
+    private static final int CHUNKS_IN_FLIGHT_PER_WORKER = 4;
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+    public static final String HEADER = "puzzle,solution,status,nanos,nodes\n";
+    private static final String CHECKPOINT_SUFFIX = ".checkpoint";
+    private static final long CHECKPOINT_INTERVAL_NANOS = 5_000_000_000L;
+
+    private static final Chunk END = new Chunk(0, 0, 0);
+
+    private String inputPath;
+    private String outputPath;
+    private String engine;
+    private int workers;
+    private int chunkSize;
+    private boolean resume;
+    private Path checkpointPath;
+    private long outputOffset;
+
+    private ArrayBlockingQueue<Chunk> toSolve;
+    private ArrayBlockingQueue<Chunk> toWrite;
+    private Semaphore inFlight;
+    private volatile IOException writeError;
+    private volatile Throwable workerError;
+    private SolverMetrics metrics;
+    private SlowPuzzleRecorder slowPuzzles;
+
+    private long rows;
+    private long solved;
+    private long failed;
+    private long invalid;
+
+    /**
+     * Constructor for the BatchSolver class
+     * @param inputPath the dataset file, one "puzzle,solution" row per line (a header line is skipped)
+     * @param outputPath the CSV file to write results to
+     * @param engine the engine to solve with, one of ENGINES
+     * @param workers the number of solver threads
+     * @param chunkSize the number of puzzles handed between stages at once
+     */
+    public BatchSolver(String inputPath, String outputPath, String engine, int workers, int chunkSize) {
+        if (workers < 1 || chunkSize < 1) {
+            throw new IllegalArgumentException("Workers and chunk size must be positive");
+        }
+        this.inputPath = inputPath;
+        this.outputPath = outputPath;
+        this.engine = engine;
+        this.workers = workers;
+        this.chunkSize = chunkSize;
+        this.checkpointPath = Paths.get(outputPath + CHECKPOINT_SUFFIX);
+        this.metrics = new SolverMetrics();
+
+        int capacity = workers * CHUNKS_IN_FLIGHT_PER_WORKER;
+        this.toSolve = new ArrayBlockingQueue<Chunk>(capacity);
+        this.toWrite = new ArrayBlockingQueue<Chunk>(capacity + workers);
+        this.inFlight = new Semaphore(capacity);
+    }
+
+    /**
+     * Sets whether run() continues from the checkpoint of an earlier run instead of starting over.
+     * Without a checkpoint file the run starts from the first row.
+     * @param resume true to resume
+     */
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
+
+    /**
+     * Sets a recorder that workers hand puzzles over its thresholds to. The caller starts and closes it
+     * @param slowPuzzles the recorder, or null to not capture slow puzzles
+     */
+    public void setSlowPuzzleRecorder(SlowPuzzleRecorder slowPuzzles) {
+        this.slowPuzzles = slowPuzzles;
+    }
+
+    /**
+     * Runs the pipeline until every row of the input has been solved and written.
+     * The calling thread acts as the reader stage.
+     * @throws IOException if the input cannot be read, the output cannot be written, or a worker died so rows are missing
+     * @throws InterruptedException if the calling thread is interrupted while waiting on a stage
+     */
+    public void run() throws IOException, InterruptedException {
+        boolean resumed = resume && loadCheckpoint();
+        if (!resumed) {
+            Files.deleteIfExists(checkpointPath); // a stale checkpoint must not be applied to this output
+        }
+        long skipRows = rows;
+
+        Thread[] workerThreads = new Thread[workers];
+        for (int i = 0; i < workers; i++) {
+            workerThreads[i] = new Thread(this::solveChunks, "sudoku-worker-" + i);
+            workerThreads[i].start();
+        }
+
+        FileChannel channel = FileChannel.open(Paths.get(outputPath), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        // drop anything written after the last checkpoint, since those rows are solved again
+        channel.truncate(outputOffset);
+        channel.position(outputOffset);
+        Thread writerThread = new Thread(() -> writeChunks(channel), "sudoku-writer");
+        writerThread.start();
+
+        long rowsRead = 0;
+        try {
+            rowsRead = readChunks(skipRows);
+        } finally {
+            for (int i = 0; i < workers; i++) {
+                toSolve.put(END);
+            }
+            for (Thread thread : workerThreads) {
+                thread.join();
+            }
+            writerThread.join();
+            channel.close();
+        }
+
+        if (workerError != null) {
+            throw new IOException("A solver worker died: " + workerError, workerError);
+        }
+        if (writeError != null) {
+            throw writeError;
+        }
+        if (rows != rowsRead) {
+            throw new IOException("Only " + rows + " of " + rowsRead + " rows were written");
+        }
+    }
+
+    /**
+     * Gets the latency histograms and counters of the puzzles solved by this run (not including rows before a resume)
+     * @return the metrics, which can be read while the run is in progress
+     */
+    public SolverMetrics getMetrics() {
+        return metrics;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getSolved() {
+        return solved;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public long getInvalid() {
+        return invalid;
+    }
+
+    /**
+     * Checks if an engine name is one of ENGINES
+     * @param engine the name
+     * @return true if the engine exists
+     */
+    public static boolean isEngine(String engine) {
+        for (String known : ENGINES) {
+            if (known.equals(engine)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if an engine can solve boards of a size; other sizes are reported as invalid instead of being solved
+     * @param engine one of ENGINES
+     * @param size the number of cells per row
+     * @return true if the size is a positive square, and at most 64 for the engines backed by SudokuSolver
+     */
+    public static boolean isSupportedSize(String engine, int size) {
+        int sqrtSize = (int) Math.sqrt(size);
+        return size > 0 && sqrtSize * sqrtSize == size && (engine.equals(ENGINE_SAT) || size <= Long.SIZE);
+    }
+
+    /**
+     * Gets the name written to the status column for a status
+     * @param status one of STATUS_SOLVED, STATUS_FAILED, or STATUS_INVALID
+     * @return "solved", "failed", or "invalid"
+     */
+    public static String statusName(byte status) {
+        return STATUS_NAMES[status];
+    }
+
+    /**
+     * Parses the status column of an output row, the inverse of statusName
+     * @param name "solved", "failed", or "invalid"
+     * @return the status, or -1 if the name is unknown
+     */
+    public static byte parseStatus(String name) {
+        for (byte status = 0; status < STATUS_NAMES.length; status++) {
+            if (STATUS_NAMES[status].equals(name)) {
+                return status;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Solves one board with the given engine
+     * @param engine one of ENGINES
+     * @param board the board to solve; not modified
+     * @param nodes a one element array that receives the number of search nodes visited
+     * @return the solved board, or null if the starting board is invalid
+     */
+    public static int[][] solveBoard(String engine, int[][] board, long[] nodes) {
+        try {
+            if (engine.equals(ENGINE_SAT)) {
+                SatSudokuSolver solver = new SatSudokuSolver(board);
+                solver.solve();
+                nodes[0] = solver.getDecisions();
+                return solver.getBoard();
+            } else {
+                return solveBoard(engine, new SudokuSolver(board.length), board, nodes);
+            }
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Solves one board with an existing SudokuSolver, reloading it in place instead of allocating a new one
+     * @param engine ENGINE_AC3 or ENGINE_BACKTRACKING
+     * @param solver the solver to reuse; must have the same size as the board
+     * @param board the board to solve; not modified
+     * @param nodes a one element array that receives the number of search nodes visited
+     * @return the solver's board after solving, or null if the starting board is invalid
+     */
+    public static int[][] solveBoard(String engine, SudokuSolver solver, int[][] board, long[] nodes) {
+        try {
+            solver.reset(board);
+            if (engine.equals(ENGINE_BACKTRACKING)) {
+                solver.solveWithoutAC3();
+            } else {
+                solver.solve();
+            }
+            nodes[0] = solver.getNodes();
+            return solver.getBoard();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses a puzzle string into a board, using letters for values above 9 (A = 10, B = 11, ...)
+     * @param puzzle a string of n * n characters
+     * @param board a board of size n to fill in
+     */
+    public static void parseBoard(String puzzle, int[][] board) {
+        for (int i = 0, strIdx = 0; i < board.length; i++) {
+            for (int j = 0; j < board.length; j++) {
+                board[i][j] = Character.getNumericValue(puzzle.charAt(strIdx));
+                strIdx++;
+            }
+        }
+    }
+
+    /**
+     * Formats a board as a puzzle string, the inverse of parseBoard
+     * @param board the board
+     * @return a string of n * n characters
+     */
+    public static String formatBoard(int[][] board) {
+        StringBuilder out = new StringBuilder(board.length * board.length);
+        for (int i = 0; i < board.length; i++) {
+            for (int j = 0; j < board.length; j++) {
+                out.append(Character.forDigit(board[i][j], Character.MAX_RADIX));
+            }
+        }
+        return out.toString().toUpperCase();
+    }
+
+    /**
+     * Checks a solved board against every row, column, and box constraint
+     * @param board the board
+     * @return true if the board is completely and consistently filled in
+     */
+    public static boolean isSolved(int[][] board) {
+        int size = board.length;
+        int sqrtSize = (int) Math.sqrt(size);
+        for (int k = 0; k < size; k++) {
+            boolean[] rowSeen = new boolean[size + 1];
+            boolean[] colSeen = new boolean[size + 1];
+            boolean[] boxSeen = new boolean[size + 1];
+            for (int m = 0; m < size; m++) {
+                int rowValue = board[k][m];
+                int colValue = board[m][k];
+                int boxValue = board[(k / sqrtSize) * sqrtSize + m / sqrtSize][(k % sqrtSize) * sqrtSize + m % sqrtSize];
+                if (rowValue < 1 || rowValue > size || rowSeen[rowValue]
+                        || colValue < 1 || colValue > size || colSeen[colValue]
+                        || boxValue < 1 || boxValue > size || boxSeen[boxValue]) {
+                    return false;
+                }
+                rowSeen[rowValue] = true;
+                colSeen[colValue] = true;
+                boxSeen[boxValue] = true;
+            }
+        }
+        return true;
+    }
+
+    // MARK: - Pipeline stages
+
+    /**
+     * Reads the input into chunks for the workers, stopping early if a worker died
+     * @param skipRows the number of rows written before the checkpoint
+     * @return the number of rows in the input, including the skipped ones
+     */
+    private long readChunks(long skipRows) throws IOException, InterruptedException {
+        BufferedReader reader = new BufferedReader(new FileReader(inputPath), WRITE_BUFFER_SIZE);
+        try {
+            long sequence = 0;
+            long row = 1;
+            Chunk chunk = null;
+            String line;
+            while ((line = reader.readLine()) != null && workerError == null) {
+                if (line.isEmpty() || !Character.isLetterOrDigit(line.charAt(0)) || line.startsWith("quizzes")) {
+                    continue; // header or blank line
+                }
+                if (row <= skipRows) {
+                    row++; // already solved and written before the checkpoint
+                    continue;
+                }
+                if (chunk == null) {
+                    inFlight.acquire();
+                    chunk = new Chunk(sequence++, row, chunkSize);
+                }
+                int comma = line.indexOf(',');
+                chunk.puzzles[chunk.count++] = comma < 0 ? line : line.substring(0, comma);
+                row++;
+
+                if (chunk.count == chunkSize) {
+                    toSolve.put(chunk);
+                    chunk = null;
+                }
+            }
+            if (chunk != null) {
+                toSolve.put(chunk);
+            }
+            return row - 1;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private void solveChunks() {
+        LatencyHistogram histogram = metrics.recorder();
+        RowSolver rowSolver = new RowSolver(engine);
+        Chunk chunk = null;
+        try {
+            while (true) {
+                chunk = toSolve.take();
+                if (chunk == END) {
+                    return;
+                }
+
+                for (int k = 0; k < chunk.count; k++) {
+                    String puzzle = chunk.puzzles[k];
+                    rowSolver.solve(puzzle);
+                    chunk.status[k] = rowSolver.getStatus();
+                    chunk.solutions[k] = rowSolver.getSolution();
+                    chunk.nanos[k] = rowSolver.getNanos();
+                    chunk.nodes[k] = rowSolver.getNodes();
+                    metrics.record(histogram, chunk.nanos[k], chunk.status[k]);
+                    if (slowPuzzles != null) {
+                        slowPuzzles.offer(puzzle, chunk.solutions[k], chunk.status[k], chunk.nanos[k], chunk.nodes[k]);
+                    }
+                }
+                toWrite.put(chunk);
+                chunk = null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException | Error e) {
+            // e.g. OutOfMemoryError: fail the run, and keep draining so the reader and the other stages can finish
+            if (workerError == null) {
+                workerError = e;
+            }
+            try {
+                while (chunk != END) {
+                    if (chunk != null) {
+                        inFlight.release();
+                    }
+                    chunk = toSolve.take();
+                }
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        } finally {
+            // the writer waits for one END per worker, so send it even if this worker dies
+            try {
+                toWrite.put(END);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void writeChunks(FileChannel channel) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+        HashMap<Long, Chunk> pending = new HashMap<Long, Chunk>();
+        long next = 0;
+        int ended = 0;
+        long lastCheckpoint = System.nanoTime();
+
+        try {
+            if (outputOffset == 0) {
+                try {
+                    put(buffer, HEADER, channel);
+                } catch (IOException e) {
+                    writeError = e;
+                }
+            }
+
+            while (ended < workers) {
+                Chunk chunk = toWrite.take();
+                if (chunk == END) {
+                    ended++;
+                    continue;
+                }
+                pending.put(chunk.sequence, chunk);
+
+                while (pending.containsKey(next)) {
+                    Chunk ready = pending.remove(next++);
+                    if (writeError == null) {
+                        try {
+                            writeChunk(buffer, ready, channel);
+                        } catch (IOException e) {
+                            writeError = e; // keep draining so the other stages can finish
+                        }
+                    }
+                    inFlight.release();
+                }
+
+                if (writeError == null && System.nanoTime() - lastCheckpoint >= CHECKPOINT_INTERVAL_NANOS) {
+                    try {
+                        writeCheckpoint(buffer, channel);
+                    } catch (IOException e) {
+                        writeError = e;
+                    }
+                    lastCheckpoint = System.nanoTime();
+                }
+            }
+
+            if (!pending.isEmpty() && writeError == null) {
+                // a worker died holding chunk `next`, so the rows after it cannot be written in order
+                writeError = new IOException("Rows from " + pending.size() + " chunk(s) could not be written after a missing chunk");
+            }
+            if (writeError == null) {
+                try {
+                    writeCheckpoint(buffer, channel);
+                } catch (IOException e) {
+                    writeError = e;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeChunk(ByteBuffer buffer, Chunk chunk, FileChannel channel) throws IOException {
+        for (int k = 0; k < chunk.count; k++) {
+            put(buffer, chunk.puzzles[k], channel);
+            put(buffer, ",", channel);
+            put(buffer, chunk.solutions[k], channel);
+            put(buffer, ",", channel);
+            put(buffer, STATUS_NAMES[chunk.status[k]], channel);
+            put(buffer, ",", channel);
+            put(buffer, Long.toString(chunk.nanos[k]), channel);
+            put(buffer, ",", channel);
+            put(buffer, Long.toString(chunk.nodes[k]), channel);
+            put(buffer, "\n", channel);
+
+            rows++;
+            if (chunk.status[k] == STATUS_SOLVED) {
+                solved++;
+            } else if (chunk.status[k] == STATUS_FAILED) {
+                failed++;
+            } else {
+                invalid++;
+            }
+        }
+    }
+
+    // MARK: - Helper methods for checkpoints
+
+    /**
+     * Flushes and syncs the output, then atomically replaces the checkpoint file.
+     * Only called by the writer between chunks, so the counters always describe a contiguous prefix of the input.
+     * @param buffer the writer's buffer
+     * @param channel the output channel
+     * @throws IOException if the output or the checkpoint cannot be written
+     */
+    private void writeCheckpoint(ByteBuffer buffer, FileChannel channel) throws IOException {
+        flush(buffer, channel);
+        channel.force(false);
+        outputOffset = channel.position();
+
+        Properties checkpoint = new Properties();
+        checkpoint.setProperty("input", inputPath);
+        checkpoint.setProperty("engine", engine);
+        checkpoint.setProperty("rows", Long.toString(rows));
+        checkpoint.setProperty("solved", Long.toString(solved));
+        checkpoint.setProperty("failed", Long.toString(failed));
+        checkpoint.setProperty("invalid", Long.toString(invalid));
+        checkpoint.setProperty("outputOffset", Long.toString(outputOffset));
+
+        Path temp = Paths.get(checkpointPath + ".tmp");
+        Writer writer = new FileWriter(temp.toFile());
+        try {
+            checkpoint.store(writer, "sudoku batch checkpoint");
+        } finally {
+            writer.close();
+        }
+        Files.move(temp, checkpointPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Restores the counters and output offset from the checkpoint file, if there is one
+     * @return true if a checkpoint was loaded, false if there is none
+     * @throws IOException if the checkpoint cannot be read or belongs to a different input or engine
+     */
+    private boolean loadCheckpoint() throws IOException {
+        if (!Files.exists(checkpointPath)) {
+            return false;
+        }
+
+        Properties checkpoint = new Properties();
+        Reader reader = new FileReader(checkpointPath.toFile());
+        try {
+            checkpoint.load(reader);
+        } finally {
+            reader.close();
+        }
+
+        if (!inputPath.equals(checkpoint.getProperty("input"))) {
+            throw new IOException("Checkpoint '" + checkpointPath + "' was written for input '" + checkpoint.getProperty("input") + "'");
+        }
+        // status and node columns mean different things for different engines, so one output must not mix them
+        if (!engine.equals(checkpoint.getProperty("engine"))) {
+            throw new IOException("Checkpoint '" + checkpointPath + "' was written with engine '" + checkpoint.getProperty("engine") + "'");
+        }
+        long offset = Long.parseLong(checkpoint.getProperty("outputOffset", "0"));
+        Path output = Paths.get(outputPath);
+        if (!Files.exists(output) || offset > Files.size(output)) {
+            throw new IOException("Output '" + outputPath + "' is shorter than its checkpoint");
+        }
+
+        rows = Long.parseLong(checkpoint.getProperty("rows", "0"));
+        solved = Long.parseLong(checkpoint.getProperty("solved", "0"));
+        failed = Long.parseLong(checkpoint.getProperty("failed", "0"));
+        invalid = Long.parseLong(checkpoint.getProperty("invalid", "0"));
+        outputOffset = offset;
+        return true;
+    }
+
+    private static void put(ByteBuffer buffer, String text, FileChannel channel) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            if (!buffer.hasRemaining()) {
+                flush(buffer, channel);
+            }
+            buffer.put((byte) text.charAt(i));
+        }
+    }
+
+    private static void flush(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Turns puzzles into output rows for one thread, reusing its board and SudokuSolver while the board size stays the same.
+     * A puzzle whose length is not a square, or whose size the engine cannot solve, is reported as invalid instead of throwing
+     */
+    public static class RowSolver {
+        private String engine;
+        private int[][] board;
+        private SudokuSolver solver;
+        private long[] nodes;
+        private int[][] result;
+        private byte status;
+        private String solution;
+        private long nanos;
+
+        /**
+         * Constructor for the RowSolver class
+         * @param engine the engine to solve with, one of ENGINES
+         */
+        public RowSolver(String engine) {
+            this.engine = engine;
+            this.board = new int[0][0];
+            this.nodes = new long[1];
+        }
+
+        /**
+         * Solves a puzzle string; read the outcome with the getters or toRow()
+         * @param puzzle a string of n * n characters, 0 for blanks
+         * @return the status
+         */
+        public byte solve(String puzzle) {
+            int size = (int) Math.sqrt(puzzle.length());
+            if (size * size != puzzle.length() || !isSupportedSize(engine, size)) {
+                return unsupported();
+            }
+            if (board.length != size) {
+                board = new int[size][size];
+            }
+            parseBoard(puzzle, board);
+            solveBoard(board);
+            solution = result == null ? "" : formatBoard(result);
+            return getStatus();
+        }
+
+        /**
+         * Solves a parsed board without checking or formatting the result, e.g. when measuring the solve alone;
+         * the check runs on the first getStatus() call
+         * @param board a square board, 0 for blanks; not modified
+         * @return the solved board (owned by the reused solver), or null if the board is invalid or its size is unsupported
+         */
+        public int[][] solveBoard(int[][] board) {
+            int size = board.length;
+            solution = "";
+            if (!isSupportedSize(engine, size)) {
+                unsupported();
+                return null;
+            }
+            if (!engine.equals(ENGINE_SAT) && (solver == null || solver.getSize() != size)) {
+                solver = new SudokuSolver(size);
+            }
+
+            nodes[0] = 0;
+            long start = System.nanoTime();
+            result = solver != null ? BatchSolver.solveBoard(engine, solver, board, nodes) : BatchSolver.solveBoard(engine, board, nodes);
+            nanos = System.nanoTime() - start;
+            status = -1;
+            return result;
+        }
+
+        /**
+         * Gets the status of the last solve, checking the result against every constraint the first time
+         * @return STATUS_SOLVED, STATUS_FAILED, or STATUS_INVALID
+         */
+        public byte getStatus() {
+            if (status < 0) {
+                status = result == null ? STATUS_INVALID : isSolved(result) ? STATUS_SOLVED : STATUS_FAILED;
+            }
+            return status;
+        }
+
+        /**
+         * Gets the solution of the last puzzle passed to solve(String)
+         * @return the solved board as a puzzle string, or "" if the puzzle was invalid
+         */
+        public String getSolution() {
+            return solution;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public long getNodes() {
+            return nodes[0];
+        }
+
+        /**
+         * Formats the outcome of the last solve(String) as an output row, without the line break
+         * @param puzzle the puzzle that was solved
+         * @return puzzle,solution,status,nanos,nodes
+         */
+        public String toRow(String puzzle) {
+            return puzzle + "," + solution + "," + statusName(getStatus()) + "," + nanos + "," + nodes[0];
+        }
+
+        private byte unsupported() {
+            result = null;
+            status = STATUS_INVALID;
+            solution = "";
+            nanos = 0;
+            nodes[0] = 0;
+            return status;
+        }
+    }
+
+    /**
+     * A batch of consecutive dataset rows handed between pipeline stages
+     */
+    private static class Chunk {
+        private long sequence;
+        private long firstRow;
+        private int count;
+        private String[] puzzles;
+        private String[] solutions;
+        private byte[] status;
+        private long[] nanos;
+        private long[] nodes;
+
+        private Chunk(long sequence, long firstRow, int capacity) {
+            this.sequence = sequence;
+            this.firstRow = firstRow;
+            this.puzzles = new String[capacity];
+            this.solutions = new String[capacity];
+            this.status = new byte[capacity];
+            this.nanos = new long[capacity];
+            this.nodes = new long[capacity];
+        }
+    }
+}
@@ -0,0 +1,328 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * End-to-end regression benchmark over real puzzles.
+ * Takes a deterministic sample of a dataset (reservoir sampling with a fixed seed) or every row of a corpus file,
+ * warms each engine up on it, then measures latency percentiles, search nodes, and allocation per puzzle over several rounds
+ * spanning at least two seconds. Percentiles are taken over each puzzle's fastest round, since noise (a preempted thread,
+ * GC, code still being compiled, a busy host) only makes a solve slower; this keeps reruns of the same code close to each other.
+ * Results are written as JSON and can be compared against a stored baseline to catch regressions.
+ */
+public class Benchmark {
+    public static final int DEFAULT_ROUNDS = 5;
+    // machine speed drifts over seconds, so rounds are spread over at least this long
+    private static final long MIN_MEASURE_NANOS = 2_000_000_000L;
+    // metrics where a larger value is a regression; everything else compared is "larger is better"
+    private static final String[] LOWER_IS_BETTER = { "p50Nanos", "p90Nanos", "p99Nanos", "meanNodes", "allocatedBytesPerPuzzle" };
+    private static final String[] HIGHER_IS_BETTER = { "solved", "puzzlesPerSecond" };
+    // differences smaller than these are noise, whatever the relative change
+    private static final double[] LOWER_IS_BETTER_FLOORS = { 1000, 1000, 1000, 0.5, 16 };
+
+    private static final Pattern ENGINE_BLOCK = Pattern.compile("\"(\\w+)\"\\s*:\\s*\\{([^{}]*)\\}");
+    private static final Pattern SOURCE = Pattern.compile("\"source\"\\s*:\\s*\"((?:[^\"\\\\]|\\\\.)*)\"");
+    private static final Pattern METRIC = Pattern.compile("\"(\\w+)\"\\s*:\\s*(-?[0-9.]+(?:[eE][-+]?[0-9]+)?)");
+
+    private String sourcePath;
+    private boolean wholeFile;
+    private int sampleSize;
+    private long seed;
+    private int warmupRounds;
+    private int rounds;
+    private ArrayList<int[][]> boards;
+    private BatchSolver.RowSolver rowSolver; // reuses its SudokuSolver across puzzles, like a batch worker would
+
+    /**
+     * Constructor for the Benchmark class
+     * @param sourcePath the dataset or corpus file, one "puzzle,solution" row per line
+     * @param wholeFile true to use every row of the file, false to sample sampleSize rows
+     * @param sampleSize the number of rows to sample
+     * @param seed the seed for sampling, so runs use the same puzzles
+     * @param warmupRounds the number of passes over the sample before measuring
+     * @param rounds the minimum number of measured passes over the sample; more are made until two seconds have passed
+     */
+    public Benchmark(String sourcePath, boolean wholeFile, int sampleSize, long seed, int warmupRounds, int rounds) {
+        this.sourcePath = sourcePath;
+        this.wholeFile = wholeFile;
+        this.sampleSize = sampleSize;
+        this.seed = seed;
+        this.warmupRounds = warmupRounds;
+        this.rounds = rounds;
+    }
+
+    /**
+     * Reads the puzzles to benchmark
+     * @throws IOException if the file cannot be read
+     */
+    public void loadSample() throws IOException {
+        ArrayList<String> puzzles = new ArrayList<String>();
+        Random random = new Random(seed);
+        BufferedReader reader = new BufferedReader(new FileReader(sourcePath), 1 << 20);
+        try {
+            int row = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || !Character.isLetterOrDigit(line.charAt(0)) || line.startsWith("quizzes") || line.startsWith("puzzle")) {
+                    continue; // header or blank line
+                }
+                int comma = line.indexOf(',');
+                String puzzle = comma < 0 ? line : line.substring(0, comma);
+
+                if (wholeFile || row < sampleSize) {
+                    puzzles.add(puzzle);
+                } else {
+                    int slot = random.nextInt(row + 1);
+                    if (slot < sampleSize) {
+                        puzzles.set(slot, puzzle);
+                    }
+                }
+                row++;
+            }
+        } finally {
+            reader.close();
+        }
+
+        boards = new ArrayList<int[][]>(puzzles.size());
+        for (String puzzle : puzzles) {
+            int size = (int) Math.sqrt(puzzle.length());
+            if (size == 0 || size * size != puzzle.length()) {
+                continue;
+            }
+            int[][] board = new int[size][size];
+            BatchSolver.parseBoard(puzzle, board);
+            boards.add(board);
+        }
+    }
+
+    public int getSampleCount() {
+        return boards == null ? 0 : boards.size();
+    }
+
+    /**
+     * Warms an engine up on the sample, then measures every puzzle once per round
+     * @param engine one of BatchSolver.ENGINES
+     * @return the metrics, in the order they are reported; latencies use each puzzle's fastest round
+     */
+    public LinkedHashMap<String, Double> run(String engine) {
+        rowSolver = new BatchSolver.RowSolver(engine);
+        for (int round = 0; round < warmupRounds; round++) {
+            for (int[][] board : boards) {
+                rowSolver.solveBoard(board);
+            }
+        }
+
+        com.sun.management.ThreadMXBean threads = allocationCounter();
+        long[] fastest = new long[boards.size()];
+        Arrays.fill(fastest, Long.MAX_VALUE);
+        long fewestAllocated = Long.MAX_VALUE;
+        long totalNodes = 0;
+        int solved = 0;
+        int invalid = 0;
+        long measureStart = System.nanoTime();
+        for (int round = 0; round < rounds || System.nanoTime() - measureStart < MIN_MEASURE_NANOS; round++) {
+            long allocated = 0;
+            totalNodes = 0;
+            solved = 0;
+            invalid = 0;
+            for (int index = 0; index < fastest.length; index++) {
+                long allocatedBefore = threads == null ? 0 : threads.getCurrentThreadAllocatedBytes();
+                long start = System.nanoTime();
+                rowSolver.solveBoard(boards.get(index));
+                long nanos = System.nanoTime() - start;
+                long allocatedAfter = threads == null ? 0 : threads.getCurrentThreadAllocatedBytes();
+
+                fastest[index] = Math.min(fastest[index], nanos);
+                totalNodes += rowSolver.getNodes();
+                allocated += allocatedAfter - allocatedBefore;
+                if (rowSolver.getStatus() == BatchSolver.STATUS_SOLVED) {
+                    solved++;
+                } else if (rowSolver.getStatus() == BatchSolver.STATUS_INVALID) {
+                    invalid++; // including boards of a size the engine cannot solve
+                }
+            }
+            fewestAllocated = Math.min(fewestAllocated, allocated);
+        }
+
+        // a preempted or not yet compiled solve is only slower, so each puzzle's fastest round is its real cost
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long nanos : fastest) {
+            histogram.record(nanos);
+        }
+        double count = boards.size();
+        double seconds = histogram.getSum() / 1e9;
+        LinkedHashMap<String, Double> metrics = new LinkedHashMap<String, Double>();
+        metrics.put("count", count);
+        metrics.put("solved", (double) solved);
+        metrics.put("invalid", (double) invalid);
+        metrics.put("p50Nanos", (double) histogram.getValueAtPercentile(50));
+        metrics.put("p90Nanos", (double) histogram.getValueAtPercentile(90));
+        metrics.put("p99Nanos", (double) histogram.getValueAtPercentile(99));
+        metrics.put("p999Nanos", (double) histogram.getValueAtPercentile(99.9));
+        metrics.put("maxNanos", (double) histogram.getMax());
+        metrics.put("meanNodes", count == 0 ? 0 : totalNodes / count);
+        metrics.put("allocatedBytesPerPuzzle", threads == null || count == 0 ? -1 : fewestAllocated / count);
+        metrics.put("allocationMBPerSecond", threads == null || seconds == 0 ? -1 : fewestAllocated / seconds / 1e6);
+        metrics.put("puzzlesPerSecond", seconds == 0 ? 0 : count / seconds);
+        return metrics;
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                return threads;
+            }
+        }
+        return null;
+    }
+
+    // MARK: - Helper methods for results
+
+    /**
+     * Writes benchmark results as JSON
+     * @param path the file to write
+     * @param results metrics per engine
+     * @throws IOException if the file cannot be written
+     */
+    public void writeJson(String path, Map<String, LinkedHashMap<String, Double>> results) throws IOException {
+        StringBuilder out = new StringBuilder();
+        out.append("{\n");
+        out.append("  \"source\": \"").append(sourcePath.replace("\\", "\\\\").replace("\"", "\\\"")).append("\",\n");
+        out.append("  \"sample\": ").append(getSampleCount()).append(",\n");
+        out.append("  \"seed\": ").append(seed).append(",\n");
+        out.append("  \"engines\": {");
+        boolean firstEngine = true;
+        for (Map.Entry<String, LinkedHashMap<String, Double>> engine : results.entrySet()) {
+            out.append(firstEngine ? "\n" : ",\n");
+            firstEngine = false;
+            out.append("    \"").append(engine.getKey()).append("\": {");
+            boolean firstMetric = true;
+            for (Map.Entry<String, Double> metric : engine.getValue().entrySet()) {
+                out.append(firstMetric ? "\n" : ",\n");
+                firstMetric = false;
+                out.append("      \"").append(metric.getKey()).append("\": ").append(formatNumber(metric.getValue()));
+            }
+            out.append("\n    }");
+        }
+        out.append("\n  }\n}\n");
+
+        FileWriter writer = new FileWriter(path);
+        try {
+            writer.write(out.toString());
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Reads the per-engine metrics of a file written by writeJson
+     * @param path the file to read
+     * @return metrics per engine
+     * @throws IOException if the file cannot be read
+     */
+    public static LinkedHashMap<String, LinkedHashMap<String, Double>> readJson(String path) throws IOException {
+        String text = new String(Files.readAllBytes(Paths.get(path)), "UTF-8");
+        LinkedHashMap<String, LinkedHashMap<String, Double>> results = new LinkedHashMap<String, LinkedHashMap<String, Double>>();
+        Matcher block = ENGINE_BLOCK.matcher(text);
+        while (block.find()) {
+            LinkedHashMap<String, Double> metrics = new LinkedHashMap<String, Double>();
+            Matcher metric = METRIC.matcher(block.group(2));
+            while (metric.find()) {
+                metrics.put(metric.group(1), Double.parseDouble(metric.group(2)));
+            }
+            results.put(block.group(1), metrics);
+        }
+        return results;
+    }
+
+    /**
+     * Checks that a baseline was measured on the same puzzles as this benchmark, so their metrics can be compared
+     * @param path a file written by writeJson
+     * @throws IOException if the file cannot be read, or its source, sample, or seed differs from this benchmark's
+     */
+    public void checkBaseline(String path) throws IOException {
+        String text = new String(Files.readAllBytes(Paths.get(path)), "UTF-8");
+        text = text.substring(0, Math.max(0, text.indexOf("\"engines\"")));
+        Matcher source = SOURCE.matcher(text);
+        String baseSource = source.find() ? source.group(1).replace("\\\"", "\"").replace("\\\\", "\\") : null;
+        Double baseSample = null;
+        Double baseSeed = null;
+        Matcher field = METRIC.matcher(text);
+        while (field.find()) {
+            if (field.group(1).equals("sample")) {
+                baseSample = Double.parseDouble(field.group(2));
+            } else if (field.group(1).equals("seed")) {
+                baseSeed = Double.parseDouble(field.group(2));
+            }
+        }
+        if (baseSource == null || baseSample == null || baseSeed == null) {
+            throw new IOException("it has no source, sample, and seed");
+        }
+        if (!baseSource.equals(sourcePath) || baseSample != getSampleCount() || baseSeed != seed) {
+            throw new IOException("it was measured on " + baseSample.longValue() + " puzzles from '" + baseSource + "' with seed "
+                    + baseSeed.longValue() + ", but this run uses " + getSampleCount() + " puzzles from '" + sourcePath + "' with seed " + seed);
+        }
+    }
+
+    /**
+     * Compares results against a baseline
+     * @param results metrics per engine from this run
+     * @param baseline metrics per engine from the baseline
+     * @param thresholdPercent how much worse than the baseline a metric may get before it counts as a regression
+     * @return a description of every regression; empty if there are none
+     */
+    public static ArrayList<String> compare(Map<String, LinkedHashMap<String, Double>> results,
+            Map<String, LinkedHashMap<String, Double>> baseline, double thresholdPercent) {
+        ArrayList<String> regressions = new ArrayList<String>();
+        double threshold = thresholdPercent / 100.0;
+        for (Map.Entry<String, LinkedHashMap<String, Double>> engine : results.entrySet()) {
+            LinkedHashMap<String, Double> base = baseline.get(engine.getKey());
+            if (base == null) {
+                continue;
+            }
+            LinkedHashMap<String, Double> current = engine.getValue();
+
+            for (int k = 0; k < LOWER_IS_BETTER.length; k++) {
+                String name = LOWER_IS_BETTER[k];
+                Double was = base.get(name);
+                Double now = current.get(name);
+                if (was != null && now != null && was >= 0 && now > was * (1 + threshold) && now - was > LOWER_IS_BETTER_FLOORS[k]) {
+                    regressions.add(describe(engine.getKey(), name, was, now));
+                }
+            }
+            for (String name : HIGHER_IS_BETTER) {
+                Double was = base.get(name);
+                Double now = current.get(name);
+                if (was != null && now != null && now < was * (1 - (name.equals("solved") ? 0 : threshold))) {
+                    regressions.add(describe(engine.getKey(), name, was, now));
+                }
+            }
+        }
+        return regressions;
+    }
+
+    private static String describe(String engine, String metric, double was, double now) {
+        double change = was == 0 ? 100 : (now - was) / was * 100;
+        return String.format(Locale.ROOT, "%s %s: %s -> %s (%+.1f%%)", engine, metric, formatNumber(was), formatNumber(now), change);
+    }
+
+    private static String formatNumber(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+}
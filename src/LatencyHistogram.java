@@ -0,0 +1,119 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size histogram of non-negative long values (e.g. nanoseconds) with log-linear buckets, in the style of
+ * HdrHistogram: every power of two is split into 64 linear sub-buckets, so any recorded value is reported within
+ * about 1.6% of its true value, while the whole range of a long fits in under 4000 buckets.
+ * Recording is lock-free but expects a single writing thread per histogram; other threads may read it at any time.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT / 2;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+
+    private AtomicLongArray counts;
+    private volatile long totalCount;
+    private volatile long sum;
+    private volatile long max;
+
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKET_COUNT);
+    }
+
+    /**
+     * Records a value. Must only be called by the thread that owns this histogram
+     * @param value a non-negative value; negative values are recorded as 0
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        int index = bucketIndex(value);
+        // single writer, so a plain read followed by an ordered write is enough
+        counts.lazySet(index, counts.get(index) + 1);
+        sum += value;
+        if (value > max) {
+            max = value;
+        }
+        totalCount++;
+    }
+
+    /**
+     * Adds every count of another histogram into this one
+     * @param other the histogram to add; may be written to concurrently
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long count = other.counts.get(i);
+            if (count != 0) {
+                counts.lazySet(i, counts.get(i) + count);
+                totalCount += count;
+            }
+        }
+        sum += other.sum;
+        if (other.max > max) {
+            max = other.max;
+        }
+    }
+
+    /**
+     * Gets the value at a percentile, reported as the highest value that falls in the same bucket
+     * @param percentile a percentile between 0 and 100
+     * @return the value, or 0 if the histogram is empty
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += counts.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(highestValueInBucket(i), max);
+            }
+        }
+        return max;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return totalCount == 0 ? 0 : (double) sum / totalCount;
+    }
+
+    // MARK: - Helper methods for buckets
+
+    private static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - (SUB_BUCKET_BITS - 1);
+        return shift * SUB_BUCKET_HALF + (int) (value >>> shift);
+    }
+
+    private static long highestValueInBucket(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_HALF - 1;
+        long subBucket = index - (long) shift * SUB_BUCKET_HALF;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
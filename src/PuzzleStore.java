@@ -0,0 +1,241 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Keeps a whole 9x9 dataset resident outside the Java heap, packed two cells per byte (one nibble each).
+ * Every record is a 41 byte puzzle followed by a 41 byte solution, so the 9,000,000 row dataset takes about 740 MB
+ * of direct or memory-mapped memory and puts no load on the garbage collector.
+ * Accessors decode straight into a caller-supplied buffer and never allocate.
+ * A store can be loaded from the CSV dataset or memory-mapped from a file written by save().
+ */
+public class PuzzleStore {
+    public static final int CELLS = 81;
+    private static final int GRID_BYTES = (CELLS + 1) / 2;
+    private static final int RECORD_BYTES = 2 * GRID_BYTES;
+    private static final int CSV_ROW_MIN_BYTES = 2 * CELLS + 2; // two grids, a comma, and a newline
+
+    private static final long MAGIC = 0x5355444f4b555053L; // "SUDOKUPS"
+    private static final int HEADER_BYTES = 16;
+
+    private ByteBuffer records;
+    private int count;
+
+    private PuzzleStore(ByteBuffer records, int count) {
+        this.records = records;
+        this.count = count;
+    }
+
+    /**
+     * Loads every row of a CSV dataset into direct (off-heap) memory
+     * @param csvPath the dataset, one "puzzle,solution" row per line (a header line is skipped)
+     * @return the store
+     * @throws IOException if the file cannot be read, has a malformed row, or is too large for one store
+     */
+    public static PuzzleStore loadCsv(String csvPath) throws IOException {
+        long capacity = Files.size(Paths.get(csvPath)) / CSV_ROW_MIN_BYTES + 1;
+        if (capacity * RECORD_BYTES > Integer.MAX_VALUE) {
+            throw new IOException("Dataset '" + csvPath + "' is too large for one store");
+        }
+        ByteBuffer records = ByteBuffer.allocateDirect((int) capacity * RECORD_BYTES);
+
+        BufferedReader reader = new BufferedReader(new FileReader(csvPath), 1 << 20);
+        int count = 0;
+        long lineNumber = 0;
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty() || !Character.isDigit(line.charAt(0))) {
+                    continue; // header or blank line
+                }
+                if (!isPackableRow(line)) {
+                    throw new IOException("Line " + lineNumber + " of '" + csvPath + "' is not a 9x9 puzzle and solution of "
+                            + CELLS + " digits each, separated by a comma");
+                }
+                if (count == capacity) {
+                    throw new IOException("Dataset '" + csvPath + "' has more rows than expected");
+                }
+                int base = count * RECORD_BYTES;
+                packGrid(line, 0, records, base);
+                packGrid(line, CELLS + 1, records, base + GRID_BYTES);
+                count++;
+            }
+        } finally {
+            reader.close();
+        }
+        return new PuzzleStore(records, count);
+    }
+
+    /**
+     * Memory-maps a file written by save(), so the store is paged in from disk on demand
+     * @param storePath the packed file
+     * @return the store
+     * @throws IOException if the file cannot be mapped or is not a packed store
+     */
+    public static PuzzleStore map(String storePath) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(storePath), StandardOpenOption.READ);
+        try {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Store '" + storePath + "' is too large to map");
+            }
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            mapped.order(ByteOrder.BIG_ENDIAN);
+            // a negative count or another record size is a corrupt header or a format this code cannot decode
+            if (mapped.limit() < HEADER_BYTES || mapped.getLong(0) != MAGIC || mapped.getInt(8) < 0 || mapped.getInt(12) != RECORD_BYTES) {
+                throw new IOException("'" + storePath + "' is not a packed puzzle store");
+            }
+            int count = mapped.getInt(8);
+            if ((long) count * RECORD_BYTES > mapped.limit() - HEADER_BYTES) {
+                throw new IOException("Store '" + storePath + "' is truncated");
+            }
+            mapped.position(HEADER_BYTES);
+            return new PuzzleStore(mapped.slice(), count);
+        } finally {
+            channel.close(); // the mapping stays valid after the channel is closed
+        }
+    }
+
+    /**
+     * Checks if a file starts with the packed store header, so callers can tell it apart from a CSV dataset
+     * @param path the file
+     * @return true if the file was written by save()
+     */
+    public static boolean isStoreFile(String path) {
+        try {
+            FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+            try {
+                ByteBuffer header = ByteBuffer.allocate(8);
+                return channel.read(header, 0) == 8 && header.getLong(0) == MAGIC;
+            } finally {
+                channel.close();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes the store to a file that map() can load
+     * @param storePath the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void save(String storePath) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(storePath), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putLong(MAGIC).putInt(count).putInt(RECORD_BYTES);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+
+            ByteBuffer view = records.duplicate();
+            view.position(0).limit(count * RECORD_BYTES);
+            while (view.hasRemaining()) {
+                channel.write(view);
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Decodes a puzzle into a flat row-major buffer, 0 for blanks
+     * @param index the 0-based row of the dataset
+     * @param cells a buffer of at least 81 ints
+     */
+    public void getPuzzle(int index, int[] cells) {
+        unpackGrid(recordOffset(index), cells);
+    }
+
+    /**
+     * Decodes a solution into a flat row-major buffer
+     * @param index the 0-based row of the dataset
+     * @param cells a buffer of at least 81 ints
+     */
+    public void getSolution(int index, int[] cells) {
+        unpackGrid(recordOffset(index) + GRID_BYTES, cells);
+    }
+
+    /**
+     * Decodes a puzzle into a 9x9 board, 0 for blanks
+     * @param index the 0-based row of the dataset
+     * @param board a 9x9 board to fill in
+     */
+    public void getPuzzle(int index, int[][] board) {
+        unpackGrid(recordOffset(index), board);
+    }
+
+    /**
+     * Decodes a solution into a 9x9 board
+     * @param index the 0-based row of the dataset
+     * @param board a 9x9 board to fill in
+     */
+    public void getSolution(int index, int[][] board) {
+        unpackGrid(recordOffset(index) + GRID_BYTES, board);
+    }
+
+    // MARK: - Helper methods for packing
+
+    private int recordOffset(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for store of size " + count);
+        }
+        return index * RECORD_BYTES;
+    }
+
+    /**
+     * Checks that a dataset row is exactly two grids of digits separated by a comma, so packGrid() can store it in nibbles
+     * @param line the row
+     * @return true if the row can be packed
+     */
+    private static boolean isPackableRow(String line) {
+        if (line.length() != 2 * CELLS + 1 || line.charAt(CELLS) != ',') {
+            return false;
+        }
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (i != CELLS && (c < '0' || c > '9')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void packGrid(String line, int start, ByteBuffer records, int offset) {
+        for (int i = 0; i < CELLS; i += 2) {
+            int low = line.charAt(start + i) - '0';
+            int high = i + 1 < CELLS ? line.charAt(start + i + 1) - '0' : 0;
+            records.put(offset + (i >> 1), (byte) ((high << 4) | (low & 0xF)));
+        }
+    }
+
+    private void unpackGrid(int offset, int[] cells) {
+        for (int i = 0; i < CELLS; i += 2) {
+            int packed = records.get(offset + (i >> 1));
+            cells[i] = packed & 0xF;
+            if (i + 1 < CELLS) {
+                cells[i + 1] = (packed >> 4) & 0xF;
+            }
+        }
+    }
+
+    private void unpackGrid(int offset, int[][] board) {
+        for (int i = 0; i < CELLS; i++) {
+            int packed = records.get(offset + (i >> 1));
+            board[i / 9][i % 9] = ((i & 1) == 0 ? packed : packed >> 4) & 0xF;
+        }
+    }
+}
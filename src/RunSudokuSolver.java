@@ -1,12 +1,20 @@
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Random;
 import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
 
 public class RunSudokuSolver {
     private static final String FILENAME = "sudoku.csv";
     private static int[][] board;
     private static int[][] solution;
+    private static PuzzleStore store;
 
     // for some console fun
     public static final String ANSI_RESET = "\u001B[0m";
@@ -75,10 +83,41 @@ public class RunSudokuSolver {
         scanner.close();
     }
 
-    private static void createBoardFromFilePath(String filePath) throws FileNotFoundException {
+    private static void createBoardFromStore(int selection) {
         board = new int[9][9];
         solution = new int[9][9];
 
+        store.getPuzzle(selection - 1, board);
+        store.getSolution(selection - 1, solution);
+    }
+
+    private static void loadStore(String storePath) {
+        long startTime = System.nanoTime();
+        try {
+            if (PuzzleStore.isStoreFile(storePath)) {
+                store = PuzzleStore.map(storePath);
+            } else {
+                store = PuzzleStore.loadCsv(storePath);
+            }
+        } catch (IOException e) {
+            System.out.println(ANSI_RED + "Could not load puzzle store '" + storePath + "': " + e.getMessage() + ANSI_RESET);
+            System.exit(1);
+        }
+        System.out.printf("Loaded %d puzzles from '%s' in %.2f s.%n", store.size(), storePath, (System.nanoTime() - startTime) / 1e9);
+    }
+
+    private static void packStore(String csvPath, String storePath) {
+        loadStore(csvPath);
+        try {
+            store.save(storePath);
+        } catch (IOException e) {
+            System.out.println(ANSI_RED + "Could not write puzzle store '" + storePath + "': " + e.getMessage() + ANSI_RESET);
+            System.exit(1);
+        }
+        System.out.println(ANSI_GREEN + "Packed " + store.size() + " puzzles into '" + storePath + "'." + ANSI_RESET);
+    }
+
+    private static void createBoardFromFilePath(String filePath) throws FileNotFoundException {
         File file = new File(filePath);
         Scanner scanner = new Scanner(file);
         
@@ -87,8 +126,13 @@ public class RunSudokuSolver {
         char[] boardString = lineArray[0].toCharArray();
         char[] solutionString = lineArray[1].toCharArray();
 
-        for (int i = 0, strIdx = 0; i < 9; i++) {
-            for (int j = 0; j < 9; j++) {
+        // boards larger than 9x9 use letters for values above 9 (A = 10, B = 11, ...)
+        int size = (int) Math.sqrt(boardString.length);
+        board = new int[size][size];
+        solution = new int[size][size];
+
+        for (int i = 0, strIdx = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
                 board[i][j] = Character.getNumericValue(boardString[strIdx]);
                 solution[i][j] = Character.getNumericValue(solutionString[strIdx]);
                 strIdx++;
@@ -98,17 +142,430 @@ public class RunSudokuSolver {
         scanner.close();
     }
 
+    private static void printResult(boolean matchesSolution, boolean isValidSolution) {
+        if (matchesSolution) {
+            System.out.println(ANSI_GREEN + "The solved puzzle matches the provided solution." + ANSI_RESET);
+        } else if (isValidSolution) {
+            System.out.println(ANSI_YELLOW + "The solved puzzle is valid, but does not match the provided solution." + ANSI_RESET);
+            System.out.println("Some (not many) sudoku puzzles have multiple valid solutions.");
+        } else {
+            System.out.println(ANSI_RED + "The solved puzzle is not a valid solution." + ANSI_RESET);
+        }
+    }
+
+    private static int parsePositiveOption(String arg, String prefix) {
+        try {
+            int value = Integer.parseInt(arg.substring(prefix.length()));
+            if (value > 0) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // fall through to the error below
+        }
+        System.out.println(ANSI_RED + "Option " + prefix + " must be a positive integer." + ANSI_RESET);
+        System.exit(1);
+        return 0;
+    }
+
+    private static void runBatch(String inputPath, String outputPath, String engine, int threads, int chunkSize, boolean resume,
+            String metricsOutput, SlowPuzzleRecorder slowPuzzles) {
+        System.out.println("Solving every puzzle in '" + inputPath + "' with " + threads + " worker(s), writing to '" + outputPath + "'...");
+        BatchSolver batch = new BatchSolver(inputPath, outputPath, engine, threads, chunkSize);
+        batch.setResume(resume);
+        batch.setSlowPuzzleRecorder(slowPuzzles);
+
+        long startTime = System.nanoTime();
+        try {
+            if (slowPuzzles != null) {
+                slowPuzzles.start();
+            }
+            batch.run();
+            if (slowPuzzles != null) {
+                slowPuzzles.close();
+            }
+        } catch (FileNotFoundException e) {
+            System.out.println(ANSI_RED + "Could not find file at path '" + inputPath + "'. Please ensure that the file exists." + ANSI_RESET);
+            System.exit(1);
+        } catch (Exception e) {
+            System.out.println(ANSI_RED + "Batch run failed: " + e.getMessage() + ANSI_RESET);
+            System.exit(1);
+        }
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+
+        System.out.println("Rows: " + batch.getRows() + ", solved: " + batch.getSolved() + ", failed: " + batch.getFailed() + ", invalid: " + batch.getInvalid());
+        System.out.printf("Elapsed: %.2f s (%.0f puzzles/s)%n", seconds, batch.getRows() / seconds);
+        System.out.println(batch.getMetrics().summary());
+        if (slowPuzzles != null) {
+            System.out.println("Captured " + slowPuzzles.getCaptured() + " new slow puzzle(s)" + (slowPuzzles.getDropped() > 0 ? " (" + slowPuzzles.getDropped() + " dropped)" : "")
+                    + (slowPuzzles.getUnsolved() > 0 ? "; " + slowPuzzles.getUnsolved() + " slow puzzle(s) were not solved and not captured" : "") + ".");
+        }
+        if (metricsOutput != null) {
+            try {
+                FileWriter writer = new FileWriter(metricsOutput);
+                try {
+                    batch.getMetrics().writePrometheus(writer);
+                } finally {
+                    writer.close();
+                }
+            } catch (IOException e) {
+                System.out.println(ANSI_RED + "Could not write metrics to '" + metricsOutput + "': " + e.getMessage() + ANSI_RESET);
+            }
+        }
+        if (batch.getFailed() > 0 || batch.getInvalid() > 0) {
+            System.out.println(ANSI_YELLOW + "Some puzzles could not be solved. See the status column of the output." + ANSI_RESET);
+        } else {
+            System.out.println(ANSI_GREEN + "Every puzzle was solved." + ANSI_RESET);
+        }
+    }
+
+    private static void runBench(String sourcePath, boolean wholeFile, int sampleSize, long seed, int warmupRounds, int rounds,
+            String[] engines, String outputPath, String baselinePath, int thresholdPercent) {
+        Benchmark benchmark = new Benchmark(sourcePath, wholeFile, sampleSize, seed, warmupRounds, rounds);
+        try {
+            benchmark.loadSample();
+        } catch (IOException e) {
+            System.out.println(ANSI_RED + "Could not read puzzles from '" + sourcePath + "'. Please ensure that the file exists." + ANSI_RESET);
+            System.exit(1);
+        }
+        if (baselinePath != null) {
+            try {
+                benchmark.checkBaseline(baselinePath);
+            } catch (IOException e) {
+                System.out.println(ANSI_RED + "Cannot compare against baseline '" + baselinePath + "': " + e.getMessage() + ANSI_RESET);
+                System.exit(1);
+            }
+        }
+        System.out.println("Benchmarking " + benchmark.getSampleCount() + " puzzles from '" + sourcePath + "' (" + warmupRounds + " warm-up round(s), fastest of at least " + rounds + " measured round(s) per puzzle)...");
+
+        LinkedHashMap<String, LinkedHashMap<String, Double>> results = new LinkedHashMap<String, LinkedHashMap<String, Double>>();
+        for (String engine : engines) {
+            LinkedHashMap<String, Double> metrics = benchmark.run(engine);
+            results.put(engine, metrics);
+            System.out.printf("%-13s solved %d/%d (%d invalid), p50 %.3f ms, p90 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms, nodes %.1f, alloc %.0f B/puzzle (%.1f MB/s), %.0f puzzles/s%n",
+                    engine, metrics.get("solved").longValue(), metrics.get("count").longValue(), metrics.get("invalid").longValue(),
+                    metrics.get("p50Nanos") / 1e6, metrics.get("p90Nanos") / 1e6, metrics.get("p99Nanos") / 1e6,
+                    metrics.get("p999Nanos") / 1e6, metrics.get("maxNanos") / 1e6, metrics.get("meanNodes"),
+                    metrics.get("allocatedBytesPerPuzzle"), metrics.get("allocationMBPerSecond"), metrics.get("puzzlesPerSecond"));
+        }
+
+        try {
+            benchmark.writeJson(outputPath, results);
+        } catch (IOException e) {
+            System.out.println(ANSI_RED + "Could not write results to '" + outputPath + "': " + e.getMessage() + ANSI_RESET);
+            System.exit(1);
+        }
+        System.out.println("Results written to '" + outputPath + "'.");
+
+        if (baselinePath != null) {
+            ArrayList<String> regressions = null;
+            try {
+                regressions = Benchmark.compare(results, Benchmark.readJson(baselinePath), thresholdPercent);
+            } catch (IOException e) {
+                System.out.println(ANSI_RED + "Could not read baseline '" + baselinePath + "': " + e.getMessage() + ANSI_RESET);
+                System.exit(1);
+            }
+            if (regressions.isEmpty()) {
+                System.out.println(ANSI_GREEN + "No metric regressed by more than " + thresholdPercent + "% against '" + baselinePath + "'." + ANSI_RESET);
+            } else {
+                System.out.println(ANSI_RED + "Regressions against '" + baselinePath + "' (threshold " + thresholdPercent + "%):" + ANSI_RESET);
+                for (String regression : regressions) {
+                    System.out.println(ANSI_RED + "  " + regression + ANSI_RESET);
+                }
+                System.exit(1);
+            }
+        }
+    }
+
+    private static void runCoordinator(String inputPath, String outputPath, String engine, int shardSize, long[] rowRange,
+            String bindAddress, int port, int spawn, String metricsOutput) {
+        ShardCoordinator coordinator = new ShardCoordinator(inputPath, outputPath, engine, shardSize, rowRange[0], rowRange[1]);
+        ArrayList<Process> workers = new ArrayList<Process>();
+        long startTime = System.nanoTime();
+        try {
+            port = coordinator.start(bindAddress, port);
+            System.out.println("Coordinating '" + inputPath + "' in shards of " + shardSize + " rows on " + bindAddress + ":" + port + ", writing to '" + outputPath + "'...");
+            if (spawn > 0) {
+                String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+                String connectAddress = bindAddress.equals("0.0.0.0") ? "127.0.0.1" : bindAddress;
+                for (int i = 0; i < spawn; i++) {
+                    ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                            "RunSudokuSolver", "--worker=" + connectAddress + ":" + port);
+                    builder.redirectOutput(ProcessBuilder.Redirect.DISCARD).redirectError(ProcessBuilder.Redirect.INHERIT);
+                    workers.add(builder.start());
+                }
+                System.out.println("Started " + spawn + " local worker process(es).");
+            } else {
+                System.out.println("Start workers with: java RunSudokuSolver --worker=<this host>:" + port);
+            }
+            coordinator.await();
+        } catch (FileNotFoundException e) {
+            System.out.println(ANSI_RED + "Could not find file at path '" + inputPath + "'. Please ensure that the file exists." + ANSI_RESET);
+            System.exit(1);
+        } catch (Exception e) {
+            System.out.println(ANSI_RED + "Sharded run failed: " + e.getMessage() + ANSI_RESET);
+            System.exit(1);
+        } finally {
+            for (Process worker : workers) {
+                try {
+                    if (!worker.waitFor(5, TimeUnit.SECONDS)) {
+                        worker.destroy();
+                    }
+                } catch (InterruptedException e) {
+                    worker.destroy();
+                }
+            }
+        }
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+
+        System.out.println("Rows: " + coordinator.getRows() + ", solved: " + coordinator.getSolved() + ", failed: " + coordinator.getFailed() + ", invalid: " + coordinator.getInvalid());
+        System.out.printf("Search nodes: %d (%.1f per row)%n", coordinator.getNodes(), coordinator.getRows() == 0 ? 0.0 : (double) coordinator.getNodes() / coordinator.getRows());
+        System.out.printf("Elapsed: %.2f s (%.0f puzzles/s)%n", seconds, coordinator.getRows() / seconds);
+        System.out.println(coordinator.getMetrics().summary());
+        for (Map.Entry<String, Long> worker : coordinator.getWorkerRows().entrySet()) {
+            System.out.println("  worker " + worker.getKey() + ": " + worker.getValue() + " rows");
+        }
+        if (coordinator.getReassigned() > 0) {
+            System.out.println(ANSI_YELLOW + coordinator.getReassigned() + " shard(s) were reassigned after their worker failed." + ANSI_RESET);
+        }
+        if (metricsOutput != null) {
+            try {
+                FileWriter writer = new FileWriter(metricsOutput);
+                try {
+                    coordinator.getMetrics().writePrometheus(writer);
+                } finally {
+                    writer.close();
+                }
+            } catch (IOException e) {
+                System.out.println(ANSI_RED + "Could not write metrics to '" + metricsOutput + "': " + e.getMessage() + ANSI_RESET);
+            }
+        }
+        if (coordinator.getFailed() > 0 || coordinator.getInvalid() > 0) {
+            System.out.println(ANSI_YELLOW + "Some puzzles could not be solved. See the status column of the output." + ANSI_RESET);
+        } else {
+            System.out.println(ANSI_GREEN + "Every puzzle was solved." + ANSI_RESET);
+        }
+    }
+
+    private static void runWorker(String address) {
+        int colon = address.lastIndexOf(':');
+        int port = -1;
+        try {
+            port = Integer.parseInt(address.substring(colon + 1));
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        if (colon <= 0 || port < 1 || port > 65535) {
+            System.out.println(ANSI_RED + "Option --worker must be <host>:<port>." + ANSI_RESET);
+            System.exit(1);
+        }
+
+        ShardWorker worker = new ShardWorker(address.substring(0, colon), port);
+        System.out.println("Worker " + worker.getName() + " connecting to " + address + "...");
+        try {
+            worker.run();
+        } catch (IOException e) {
+            System.out.println(ANSI_RED + "Worker failed: " + e.getMessage() + ANSI_RESET);
+            System.exit(1);
+        }
+        System.out.println("Solved " + worker.getRows() + " rows in " + worker.getShards() + " shard(s).");
+    }
+
+    private static long[] parseRowRange(String arg) {
+        String range = arg.substring("--rows=".length());
+        int dash = range.indexOf('-');
+        try {
+            long first = Long.parseLong(dash < 0 ? range : range.substring(0, dash));
+            long last = dash < 0 ? first : (dash == range.length() - 1 ? Long.MAX_VALUE : Long.parseLong(range.substring(dash + 1)));
+            if (first >= 1 && last >= first) {
+                return new long[] { first, last };
+            }
+        } catch (NumberFormatException e) {
+            // fall through to the error below
+        }
+        System.out.println(ANSI_RED + "Option --rows must be <first>-<last> or <first>-, counting from 1." + ANSI_RESET);
+        System.exit(1);
+        return null;
+    }
+
+    private static void printTraceSummary(String tracePath) {
+        try {
+            System.out.print(SearchTrace.read(tracePath).summary(10, 20));
+        } catch (IOException e) {
+            System.out.println(ANSI_RED + "Could not read trace '" + tracePath + "': " + e.getMessage() + ANSI_RESET);
+            System.exit(1);
+        }
+    }
+
+    private static void writeTrace(SearchTrace trace, String tracePath) {
+        try {
+            trace.write(tracePath);
+        } catch (IOException e) {
+            System.out.println(ANSI_RED + "Could not write trace '" + tracePath + "': " + e.getMessage() + ANSI_RESET);
+            System.exit(1);
+        }
+        System.out.println("\nSearch trace written to '" + tracePath + "':");
+        System.out.print(trace.summary(10, 20));
+    }
+
     public static void main(String[] args) {
+        String engine = BatchSolver.ENGINE_AC3;
+        boolean engineSet = false;
+        String batchOutput = null;
+        boolean resume = false;
+        String metricsOutput = null;
+        String storePath = null;
+        String packOutput = null;
+        String benchOutput = null;
+        String corpusPath = null;
+        String baselinePath = null;
+        int sampleSize = 1000;
+        int seed = 42;
+        int warmupRounds = 1;
+        int rounds = Benchmark.DEFAULT_ROUNDS;
+        int thresholdPercent = 10;
+        String captureOutput = null;
+        String traceOutput = null;
+        String coordinateOutput = null;
+        String workerAddress = null;
+        String bindAddress = "127.0.0.1";
+        int port = 0;
+        int spawn = 0;
+        int shardSize = ShardCoordinator.DEFAULT_SHARD_SIZE;
+        long[] rowRange = { 1, Long.MAX_VALUE };
+        String traceSummary = null;
+        int slowMillis = 10;
+        int slowNodes = 10000;
+        boolean slowThresholdSet = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int chunkSize = BatchSolver.DEFAULT_CHUNK_SIZE;
+        ArrayList<String> positional = new ArrayList<String>();
+        for (String arg : args) {
+            if (arg.startsWith("--engine=")) {
+                engine = arg.substring("--engine=".length());
+                if (!BatchSolver.isEngine(engine)) {
+                    System.out.println(ANSI_RED + "Unknown engine '" + engine + "'. Use one of " + String.join(", ", BatchSolver.ENGINES) + "." + ANSI_RESET);
+                    System.exit(1);
+                }
+                engineSet = true;
+            } else if (arg.startsWith("--batch=")) {
+                batchOutput = arg.substring("--batch=".length());
+            } else if (arg.startsWith("--metrics=")) {
+                metricsOutput = arg.substring("--metrics=".length());
+            } else if (arg.startsWith("--store=")) {
+                storePath = arg.substring("--store=".length());
+            } else if (arg.startsWith("--pack=")) {
+                packOutput = arg.substring("--pack=".length());
+            } else if (arg.startsWith("--bench=")) {
+                benchOutput = arg.substring("--bench=".length());
+            } else if (arg.startsWith("--sample=")) {
+                sampleSize = parsePositiveOption(arg, "--sample=");
+            } else if (arg.startsWith("--seed=")) {
+                seed = parsePositiveOption(arg, "--seed=");
+            } else if (arg.startsWith("--warmup=")) {
+                warmupRounds = parsePositiveOption(arg, "--warmup=");
+            } else if (arg.startsWith("--rounds=")) {
+                rounds = parsePositiveOption(arg, "--rounds=");
+            } else if (arg.startsWith("--threshold=")) {
+                thresholdPercent = parsePositiveOption(arg, "--threshold=");
+            } else if (arg.startsWith("--corpus=")) {
+                corpusPath = arg.substring("--corpus=".length());
+            } else if (arg.startsWith("--baseline=")) {
+                baselinePath = arg.substring("--baseline=".length());
+            } else if (arg.startsWith("--capture=")) {
+                captureOutput = arg.substring("--capture=".length());
+            } else if (arg.startsWith("--slow-ms=")) {
+                slowMillis = parsePositiveOption(arg, "--slow-ms=");
+                slowThresholdSet = true;
+            } else if (arg.startsWith("--slow-nodes=")) {
+                slowNodes = parsePositiveOption(arg, "--slow-nodes=");
+                slowThresholdSet = true;
+            } else if (arg.startsWith("--trace=")) {
+                traceOutput = arg.substring("--trace=".length());
+            } else if (arg.startsWith("--trace-summary=")) {
+                traceSummary = arg.substring("--trace-summary=".length());
+            } else if (arg.startsWith("--coordinate=")) {
+                coordinateOutput = arg.substring("--coordinate=".length());
+            } else if (arg.startsWith("--worker=")) {
+                workerAddress = arg.substring("--worker=".length());
+            } else if (arg.startsWith("--bind=")) {
+                bindAddress = arg.substring("--bind=".length());
+            } else if (arg.startsWith("--port=")) {
+                port = parsePositiveOption(arg, "--port=");
+            } else if (arg.startsWith("--spawn=")) {
+                spawn = parsePositiveOption(arg, "--spawn=");
+            } else if (arg.startsWith("--shard=")) {
+                shardSize = parsePositiveOption(arg, "--shard=");
+            } else if (arg.startsWith("--rows=")) {
+                rowRange = parseRowRange(arg);
+            } else if (arg.equals("--resume")) {
+                resume = true;
+            } else if (arg.startsWith("--threads=")) {
+                threads = parsePositiveOption(arg, "--threads=");
+            } else if (arg.startsWith("--chunk=")) {
+                chunkSize = parsePositiveOption(arg, "--chunk=");
+            } else {
+                positional.add(arg);
+            }
+        }
+        args = positional.toArray(new String[0]);
+
+        if (batchOutput != null) {
+            SlowPuzzleRecorder slowPuzzles = null;
+            if (captureOutput != null) {
+                slowPuzzles = new SlowPuzzleRecorder(captureOutput, slowMillis * 1_000_000L, slowNodes);
+            }
+            runBatch(args.length > 0 ? args[0] : FILENAME, batchOutput, engine, threads, chunkSize, resume, metricsOutput, slowPuzzles);
+            return;
+        }
+        if (coordinateOutput != null) {
+            if (captureOutput != null || slowThresholdSet || resume) {
+                System.out.println(ANSI_RED + "Options --capture, --slow-ms, --slow-nodes, and --resume do not work with --coordinate." + ANSI_RESET);
+                System.exit(1);
+            }
+            runCoordinator(args.length > 0 ? args[0] : FILENAME, coordinateOutput, engine, shardSize, rowRange, bindAddress, port, spawn, metricsOutput);
+            return;
+        }
+        if (workerAddress != null) {
+            runWorker(workerAddress);
+            return;
+        }
+        if (benchOutput != null) {
+            String[] engines = engineSet ? new String[] { engine } : BatchSolver.ENGINES;
+            String source = corpusPath != null ? corpusPath : (args.length > 0 ? args[0] : FILENAME);
+            runBench(source, corpusPath != null, sampleSize, seed, warmupRounds, rounds, engines, benchOutput, baselinePath, thresholdPercent);
+            return;
+        }
+        if (traceSummary != null) {
+            printTraceSummary(traceSummary);
+            return;
+        }
+        if (traceOutput != null && !engine.equals(BatchSolver.ENGINE_AC3)) {
+            System.out.println(ANSI_RED + "Option --trace only works with the ac3 engine." + ANSI_RESET);
+            System.exit(1);
+        }
+        if (packOutput != null) {
+            packStore(args.length > 0 ? args[0] : FILENAME, packOutput);
+            return;
+        }
+        if (storePath != null) {
+            loadStore(storePath);
+        }
+
         if (args.length == 1) {
             try {
                 int selection = Integer.parseInt(args[0]);
+                int maxSelection = store != null ? store.size() : 9000000;
 
-                if (selection > 9000000 || selection < 1) {
-                    System.out.println(ANSI_RED + "Selection must be an integer between 1 and 9000000." + ANSI_RESET);
+                if (selection > maxSelection || selection < 1) {
+                    System.out.println(ANSI_RED + "Selection must be an integer between 1 and " + maxSelection + "." + ANSI_RESET);
                     System.exit(1);
                 }
 
-                createBoardFromCSVDatabase(selection);
+                if (store != null) {
+                    createBoardFromStore(selection);
+                } else {
+                    createBoardFromCSVDatabase(selection);
+                }
             } catch (NumberFormatException e) {
                 System.out.println(ANSI_RED + "Could not parse argument to an integer. Trying argument as a local file path..." + ANSI_RESET);
                 
@@ -123,13 +580,23 @@ public class RunSudokuSolver {
                 System.exit(1);
             }
         } else if (args.length > 1) {
-            System.out.println(ANSI_RED + "Usage: java RunSudokuSolver <int: selection from database> or <String: file path>" + ANSI_RESET);
+            System.out.println(ANSI_RED + "Usage: java RunSudokuSolver [--engine=ac3|backtracking|sat] [--store=<file>] [--trace=<file>] <int: selection from database> or <String: file path>" + ANSI_RESET);
+            System.out.println(ANSI_RED + "   or: java RunSudokuSolver --batch=<output.csv> [--engine=ac3|backtracking|sat] [--threads=N] [--chunk=N] [--resume] [--metrics=<file>] [--capture=<file> [--slow-ms=N] [--slow-nodes=N]] [dataset file]" + ANSI_RESET);
+            System.out.println(ANSI_RED + "   or: java RunSudokuSolver --bench=<results.json> [--engine=...] [--sample=K] [--seed=S] [--corpus=<file>] [--warmup=N] [--rounds=N] [--baseline=<file>] [--threshold=PCT] [dataset file]" + ANSI_RESET);
+            System.out.println(ANSI_RED + "   or: java RunSudokuSolver --coordinate=<output.csv> [--engine=...] [--shard=N] [--rows=A-B] [--bind=ADDR] [--port=N] [--spawn=N] [--metrics=<file>] [dataset file]" + ANSI_RESET);
+            System.out.println(ANSI_RED + "   or: java RunSudokuSolver --worker=<host>:<port>" + ANSI_RESET);
+            System.out.println(ANSI_RED + "   or: java RunSudokuSolver --pack=<store file> [dataset file]" + ANSI_RESET);
+            System.out.println(ANSI_RED + "   or: java RunSudokuSolver --trace-summary=<trace file>" + ANSI_RESET);
             System.out.println("See README.md for more information.");
             System.exit(1);
         } else {
             System.out.println(ANSI_YELLOW + "No arguments provided. Using random puzzle from database." + ANSI_RESET);
             try {
-                createBoardFromCSVDatabase();
+                if (store != null) {
+                    createBoardFromStore(new Random().nextInt(store.size()) + 1);
+                } else {
+                    createBoardFromCSVDatabase();
+                }
             } catch (Exception e) {
                 System.out.println("Could not find database file. Please ensure that the file 'sudoku.csv' is in the same directory as the program.");
                 System.exit(1);
@@ -137,23 +604,42 @@ public class RunSudokuSolver {
         }
 
         try {
-            SudokuSolver solver = new SudokuSolver(board);
+            if (engine.equals(BatchSolver.ENGINE_SAT)) {
+                SatSudokuSolver solver = new SatSudokuSolver(board);
+
+                System.out.println("Unsolved Puzzle:");
+                System.out.println(solver);
+
+                solver.solve();
+
+                System.out.println("\nSolved Puzzle:");
+                System.out.println(solver);
 
-            System.out.println("Unsolved Puzzle:");
-            System.out.println(solver);
+                printResult(solver.equals(solution), solver.isValidSolution());
+            } else {
+                SudokuSolver solver = new SudokuSolver(board);
+                SearchTrace trace = null;
+                if (traceOutput != null) {
+                    trace = new SearchTrace(board.length, SearchTrace.DEFAULT_CAPACITY);
+                    solver.setTrace(trace);
+                }
+
+                System.out.println("Unsolved Puzzle:");
+                System.out.println(solver);
 
-            solver.solve();
+                if (engine.equals(BatchSolver.ENGINE_BACKTRACKING)) {
+                    solver.solveWithoutAC3();
+                } else {
+                    solver.solve();
+                }
 
-            System.out.println("\nSolved Puzzle:");
-            System.out.println(solver);
+                System.out.println("\nSolved Puzzle:");
+                System.out.println(solver);
 
-            if (solver.equals(solution)) {
-                System.out.println(ANSI_GREEN + "The solved puzzle matches the provided solution." + ANSI_RESET);
-            } else if (!solver.equals(solution) && solver.isValidSolution()) {
-                System.out.println(ANSI_YELLOW + "The solved puzzle is valid, but does not match the provided solution." + ANSI_RESET);
-                System.out.println("Some (not many) sudoku puzzles have multiple valid solutions.");
-            } else if (!solver.isValidSolution()) {
-                System.out.println(ANSI_RED + "The solved puzzle is not a valid solution." + ANSI_RESET);
+                printResult(solver.equals(solution), solver.isValidSolution());
+                if (trace != null) {
+                    writeTrace(trace, traceOutput);
+                }
             }
         } catch (Exception e) {
             System.out.println(e.getMessage());
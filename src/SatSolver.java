@@ -0,0 +1,624 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A small conflict-driven clause learning (CDCL) SAT solver.
+ * Variables are numbered from 1 and clauses are given in DIMACS style, i.e. v for "v is true" and -v for "v is false".
+ * Internally a literal is stored as 2 * (v - 1) for the positive and 2 * (v - 1) + 1 for the negative form.
+ * Uses two watched literals per clause, first-UIP clause learning, VSIDS branching with phase saving and Luby restarts.
+ * Learnt clauses also carry an activity; once there are more of them than a growing limit, the less active half is
+ * deleted, except for binary clauses and clauses that are the reason for a current assignment.
+ */
+public class SatSolver {
+    private static final byte TRUE = 1;
+    private static final byte FALSE = -1;
+    private static final byte UNDEFINED = 0;
+
+    private static final int NO_REASON = -1;
+    private static final int RESTART_BASE = 100;
+    private static final double VAR_DECAY = 0.95;
+    private static final double RESCALE_LIMIT = 1e100;
+    private static final double CLAUSE_DECAY = 0.999;
+    private static final double LEARNT_GROWTH = 1.1;
+    private static final int MIN_LEARNTS = 1000;
+
+    private int numVariables;
+    private boolean ok = true;
+
+    private ArrayList<int[]> clauses;
+    private int numOriginal; // clauses before this index are the problem, the rest are learnt
+    private double[] clauseActivity;
+    private double clauseInc = 1.0;
+    private double maxLearnts;
+    private int[][] watches;
+    private int[] watchCounts;
+
+    private byte[] assigns;
+    private byte[] polarity;
+    private int[] level;
+    private int[] reason;
+    private int[] trail;
+    private int trailSize;
+    private int[] trailLim;
+    private int decisionLevel;
+    private int qhead;
+
+    private boolean[] decision; // false for variables that are never branched on
+    private double[] activity;
+    private double varInc = 1.0;
+    private int[] heap;
+    private int[] heapIndex;
+    private int heapSize;
+
+    private boolean[] seen;
+    private int[] learnt;
+    private int learntSize;
+    private int[] toClear;
+
+    private long conflicts;
+    private long decisions;
+    private long propagations;
+
+    /**
+     * Constructor for the SatSolver class
+     * @param numVariables the number of variables, numbered 1 through numVariables
+     */
+    public SatSolver(int numVariables) {
+        this.numVariables = numVariables;
+        this.clauses = new ArrayList<int[]>();
+        this.clauseActivity = new double[16];
+        this.watches = new int[2 * numVariables][];
+        this.watchCounts = new int[2 * numVariables];
+        for (int i = 0; i < watches.length; i++) {
+            watches[i] = new int[4];
+        }
+
+        this.assigns = new byte[numVariables];
+        this.polarity = new byte[numVariables];
+        Arrays.fill(polarity, (byte) 1); // prefer the negative phase, like most CDCL solvers
+        this.level = new int[numVariables];
+        this.reason = new int[numVariables];
+        Arrays.fill(reason, NO_REASON);
+        this.trail = new int[numVariables];
+        this.trailLim = new int[numVariables + 1];
+
+        this.decision = new boolean[numVariables];
+        Arrays.fill(decision, true);
+        this.activity = new double[numVariables];
+        this.heap = new int[numVariables];
+        this.heapIndex = new int[numVariables];
+        for (int v = 0; v < numVariables; v++) {
+            heap[v] = v;
+            heapIndex[v] = v;
+        }
+        this.heapSize = numVariables;
+
+        this.seen = new boolean[numVariables];
+        this.learnt = new int[numVariables + 1];
+        this.toClear = new int[numVariables + 1];
+    }
+
+    /**
+     * Adds a clause to the problem. Must be called before solve()
+     * @param literals the DIMACS-style literals of the clause
+     * @return false if the problem is already known to be unsatisfiable, true otherwise
+     */
+    public boolean addClause(int... literals) {
+        if (!ok) {
+            return false;
+        }
+
+        int[] clause = new int[literals.length];
+        int length = 0;
+        for (int literal : literals) {
+            int lit = toInternal(literal);
+            byte value = litValue(lit);
+            if (value == TRUE) {
+                return true; // already satisfied at the top level
+            } else if (value == FALSE) {
+                continue;
+            }
+
+            boolean duplicate = false;
+            for (int k = 0; k < length; k++) {
+                if (clause[k] == lit) {
+                    duplicate = true;
+                    break;
+                } else if (clause[k] == (lit ^ 1)) {
+                    return true; // tautology
+                }
+            }
+            if (!duplicate) {
+                clause[length++] = lit;
+            }
+        }
+
+        if (length == 0) {
+            ok = false;
+        } else if (length == 1) {
+            enqueue(clause[0], NO_REASON);
+        } else {
+            attachClause(Arrays.copyOf(clause, length));
+        }
+        return ok;
+    }
+
+    /**
+     * Searches for a satisfying assignment of the clauses added so far
+     * @return true if the problem is satisfiable, false otherwise
+     */
+    public boolean solve() {
+        if (!ok) {
+            return false;
+        }
+        if (propagate() != NO_REASON) {
+            ok = false;
+            return false;
+        }
+        numOriginal = clauses.size();
+        maxLearnts = Math.max(numOriginal / 3.0, MIN_LEARNTS);
+
+        for (int restarts = 0; ; restarts++) {
+            Boolean result = search(luby(restarts) * RESTART_BASE);
+            if (result != null) {
+                ok = result;
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Marks a variable as one that search never branches on, e.g. an auxiliary variable of an encoding that
+     * propagation always sets when it matters. Must be called before solve()
+     * @param variable a variable between 1 and numVariables
+     * @param decision false to never branch on the variable, true to allow it again
+     */
+    public void setDecisionVariable(int variable, boolean decision) {
+        this.decision[variable - 1] = decision;
+    }
+
+    /**
+     * Gets the value of a variable in the model found by the last successful call to solve()
+     * @param variable a variable between 1 and numVariables
+     * @return true if the variable is assigned true, false otherwise
+     */
+    public boolean value(int variable) {
+        return assigns[variable - 1] == TRUE;
+    }
+
+    public int getNumVariables() {
+        return numVariables;
+    }
+
+    public int getNumClauses() {
+        return clauses.size();
+    }
+
+    public long getConflicts() {
+        return conflicts;
+    }
+
+    public long getDecisions() {
+        return decisions;
+    }
+
+    public long getPropagations() {
+        return propagations;
+    }
+
+    // MARK: - Helper methods for search
+
+    /**
+     * Runs CDCL search until a result is found or the conflict budget runs out
+     * @param conflictBudget the number of conflicts allowed before restarting
+     * @return TRUE if satisfiable, FALSE if unsatisfiable, null if the search should restart
+     */
+    private Boolean search(long conflictBudget) {
+        long conflictsThisRun = 0;
+        while (true) {
+            int conflict = propagate();
+            if (conflict != NO_REASON) {
+                conflicts++;
+                conflictsThisRun++;
+                if (decisionLevel == 0) {
+                    return Boolean.FALSE;
+                }
+
+                int backtrackLevel = analyze(conflict);
+                cancelUntil(backtrackLevel);
+                if (learntSize == 1) {
+                    enqueue(learnt[0], NO_REASON);
+                } else {
+                    int index = attachClause(Arrays.copyOf(learnt, learntSize));
+                    bumpClause(index);
+                    enqueue(learnt[0], index);
+                }
+                varInc /= VAR_DECAY;
+                clauseInc /= CLAUSE_DECAY;
+            } else {
+                if (conflictsThisRun >= conflictBudget) {
+                    cancelUntil(0);
+                    return null;
+                }
+                if (clauses.size() - numOriginal - trailSize >= maxLearnts) {
+                    reduceLearnts();
+                    maxLearnts *= LEARNT_GROWTH;
+                }
+
+                int next = pickBranchLiteral();
+                if (next == -1) {
+                    return Boolean.TRUE; // every decision variable is assigned without conflict
+                }
+                decisions++;
+                trailLim[decisionLevel++] = trailSize;
+                enqueue(next, NO_REASON);
+            }
+        }
+    }
+
+    /**
+     * Propagates every literal on the trail that has not been propagated yet, using the two watched literals scheme
+     * @return the index of a conflicting clause, or NO_REASON if there is no conflict
+     */
+    private int propagate() {
+        while (qhead < trailSize) {
+            int falseLit = trail[qhead++] ^ 1;
+            int[] watchList = watches[falseLit];
+            int count = watchCounts[falseLit];
+            int i = 0;
+            int j = 0;
+            propagations++;
+
+            while (i < count) {
+                int index = watchList[i++];
+                int[] clause = clauses.get(index);
+
+                // make sure the false literal is in position 1
+                if (clause[0] == falseLit) {
+                    clause[0] = clause[1];
+                    clause[1] = falseLit;
+                }
+
+                if (litValue(clause[0]) == TRUE) {
+                    watchList[j++] = index;
+                    continue;
+                }
+
+                boolean foundWatch = false;
+                for (int k = 2; k < clause.length; k++) {
+                    if (litValue(clause[k]) != FALSE) {
+                        clause[1] = clause[k];
+                        clause[k] = falseLit;
+                        watch(clause[1], index);
+                        foundWatch = true;
+                        break;
+                    }
+                }
+                if (foundWatch) {
+                    continue;
+                }
+
+                watchList[j++] = index;
+                if (litValue(clause[0]) == FALSE) {
+                    while (i < count) {
+                        watchList[j++] = watchList[i++];
+                    }
+                    watchCounts[falseLit] = j;
+                    qhead = trailSize;
+                    return index;
+                }
+                enqueue(clause[0], index);
+            }
+            watchCounts[falseLit] = j;
+        }
+        return NO_REASON;
+    }
+
+    /**
+     * Derives a first-UIP clause from a conflict and stores it in learnt[0 .. learntSize)
+     * @param conflict the index of the conflicting clause
+     * @return the decision level to backtrack to
+     */
+    private int analyze(int conflict) {
+        int pathCount = 0;
+        int lit = -1;
+        int trailIndex = trailSize - 1;
+        learntSize = 1; // leave room for the asserting literal
+
+        do {
+            if (conflict >= numOriginal) {
+                bumpClause(conflict);
+            }
+            int[] clause = clauses.get(conflict);
+            for (int k = (lit == -1 ? 0 : 1); k < clause.length; k++) {
+                int q = clause[k];
+                int v = q >> 1;
+                if (!seen[v] && level[v] > 0) {
+                    bumpActivity(v);
+                    seen[v] = true;
+                    if (level[v] >= decisionLevel) {
+                        pathCount++;
+                    } else {
+                        learnt[learntSize++] = q;
+                    }
+                }
+            }
+
+            while (!seen[trail[trailIndex] >> 1]) {
+                trailIndex--;
+            }
+            lit = trail[trailIndex--];
+            conflict = reason[lit >> 1];
+            seen[lit >> 1] = false;
+            pathCount--;
+        } while (pathCount > 0);
+        learnt[0] = lit ^ 1;
+
+        // drop literals that are implied by the rest of the clause
+        int originalSize = learntSize;
+        System.arraycopy(learnt, 0, toClear, 0, originalSize);
+        int kept = 1;
+        for (int i = 1; i < originalSize; i++) {
+            int v = learnt[i] >> 1;
+            if (reason[v] == NO_REASON || !isRedundant(reason[v])) {
+                learnt[kept++] = learnt[i];
+            }
+        }
+        for (int i = 1; i < originalSize; i++) {
+            seen[toClear[i] >> 1] = false;
+        }
+        learntSize = kept;
+
+        int backtrackLevel = 0;
+        if (learntSize > 1) {
+            int maxIndex = 1;
+            for (int i = 2; i < learntSize; i++) {
+                if (level[learnt[i] >> 1] > level[learnt[maxIndex] >> 1]) {
+                    maxIndex = i;
+                }
+            }
+            int tmp = learnt[1];
+            learnt[1] = learnt[maxIndex];
+            learnt[maxIndex] = tmp;
+            backtrackLevel = level[learnt[1] >> 1];
+        }
+        return backtrackLevel;
+    }
+
+    /**
+     * Checks if every antecedent of a reason clause is already in the learnt clause or fixed at the top level
+     * @param reasonIndex the index of the reason clause
+     * @return true if the implied literal can be removed from the learnt clause
+     */
+    private boolean isRedundant(int reasonIndex) {
+        int[] clause = clauses.get(reasonIndex);
+        for (int k = 1; k < clause.length; k++) {
+            int v = clause[k] >> 1;
+            if (!seen[v] && level[v] > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void cancelUntil(int targetLevel) {
+        if (decisionLevel <= targetLevel) {
+            return;
+        }
+        for (int c = trailSize - 1; c >= trailLim[targetLevel]; c--) {
+            int v = trail[c] >> 1;
+            polarity[v] = (byte) (trail[c] & 1);
+            assigns[v] = UNDEFINED;
+            reason[v] = NO_REASON;
+            if (heapIndex[v] == -1 && decision[v]) {
+                heapInsert(v);
+            }
+        }
+        trailSize = trailLim[targetLevel];
+        qhead = trailSize;
+        decisionLevel = targetLevel;
+    }
+
+    private int pickBranchLiteral() {
+        while (heapSize > 0) {
+            int v = heapRemoveMax();
+            if (assigns[v] == UNDEFINED && decision[v]) {
+                return 2 * v + polarity[v];
+            }
+        }
+        return -1;
+    }
+
+    private void enqueue(int lit, int from) {
+        int v = lit >> 1;
+        assigns[v] = ((lit & 1) == 0) ? TRUE : FALSE;
+        level[v] = decisionLevel;
+        reason[v] = from;
+        trail[trailSize++] = lit;
+    }
+
+    private int attachClause(int[] clause) {
+        int index = clauses.size();
+        clauses.add(clause);
+        if (index == clauseActivity.length) {
+            clauseActivity = Arrays.copyOf(clauseActivity, clauseActivity.length * 2);
+        }
+        clauseActivity[index] = 0;
+        watch(clause[0], index);
+        watch(clause[1], index);
+        return index;
+    }
+
+    private void watch(int lit, int clauseIndex) {
+        if (watchCounts[lit] == watches[lit].length) {
+            watches[lit] = Arrays.copyOf(watches[lit], watches[lit].length * 2);
+        }
+        watches[lit][watchCounts[lit]++] = clauseIndex;
+    }
+
+    private byte litValue(int lit) {
+        byte value = assigns[lit >> 1];
+        return ((lit & 1) == 0) ? value : (byte) -value;
+    }
+
+    private int toInternal(int literal) {
+        if (literal == 0 || Math.abs(literal) > numVariables) {
+            throw new IllegalArgumentException("Literal out of range: " + literal);
+        }
+        return literal > 0 ? 2 * (literal - 1) : 2 * (-literal - 1) + 1;
+    }
+
+    /**
+     * Finite subsequences of the Luby sequence: 1, 1, 2, 1, 1, 2, 4, 1, 1, 2, 1, 1, 2, 4, 8, ...
+     * @param x the index in the sequence
+     * @return the x-th element of the sequence
+     */
+    private static long luby(int x) {
+        int size = 1;
+        int seq = 0;
+        while (size < x + 1) {
+            seq++;
+            size = 2 * size + 1;
+        }
+        while (size - 1 != x) {
+            size = (size - 1) >> 1;
+            seq--;
+            x = x % size;
+        }
+        return 1L << seq;
+    }
+
+    // MARK: - Helper methods for learnt clause deletion
+
+    /**
+     * Deletes the less active half of the learnt clauses, keeping binary clauses and clauses that are the reason
+     * for a current assignment, then renumbers the remaining clauses in the watch lists and the reasons.
+     * Only called between propagation and the next decision, so no watch list is being walked.
+     */
+    private void reduceLearnts() {
+        double[] sorted = Arrays.copyOfRange(clauseActivity, numOriginal, clauses.size());
+        Arrays.sort(sorted);
+        double limit = sorted[sorted.length / 2];
+
+        int[] moved = new int[clauses.size()];
+        for (int index = 0; index < numOriginal; index++) {
+            moved[index] = index;
+        }
+        int kept = numOriginal;
+        for (int index = numOriginal; index < clauses.size(); index++) {
+            int[] clause = clauses.get(index);
+            if (clause.length > 2 && clauseActivity[index] < limit && !isLocked(index)) {
+                moved[index] = NO_REASON;
+            } else {
+                moved[index] = kept;
+                clauses.set(kept, clause);
+                clauseActivity[kept++] = clauseActivity[index];
+            }
+        }
+        clauses.subList(kept, clauses.size()).clear();
+
+        for (int lit = 0; lit < watches.length; lit++) {
+            int[] watchList = watches[lit];
+            int j = 0;
+            for (int i = 0; i < watchCounts[lit]; i++) {
+                int index = moved[watchList[i]];
+                if (index != NO_REASON) {
+                    watchList[j++] = index;
+                }
+            }
+            watchCounts[lit] = j;
+        }
+        for (int c = 0; c < trailSize; c++) {
+            int v = trail[c] >> 1;
+            if (reason[v] != NO_REASON) {
+                reason[v] = moved[reason[v]];
+            }
+        }
+    }
+
+    /**
+     * Checks if a clause is the reason for the current assignment of its first literal
+     * @param index the index of the clause
+     * @return true if deleting the clause would break conflict analysis, false otherwise
+     */
+    private boolean isLocked(int index) {
+        int lit = clauses.get(index)[0];
+        return reason[lit >> 1] == index && litValue(lit) == TRUE;
+    }
+
+    private void bumpClause(int index) {
+        clauseActivity[index] += clauseInc;
+        if (clauseActivity[index] > RESCALE_LIMIT) {
+            for (int i = numOriginal; i < clauses.size(); i++) {
+                clauseActivity[i] *= 1 / RESCALE_LIMIT;
+            }
+            clauseInc *= 1 / RESCALE_LIMIT;
+        }
+    }
+
+    // MARK: - Helper methods for VSIDS
+
+    private void bumpActivity(int v) {
+        activity[v] += varInc;
+        if (activity[v] > RESCALE_LIMIT) {
+            for (int i = 0; i < numVariables; i++) {
+                activity[i] *= 1 / RESCALE_LIMIT;
+            }
+            varInc *= 1 / RESCALE_LIMIT;
+        }
+        if (heapIndex[v] != -1) {
+            heapUp(heapIndex[v]);
+        }
+    }
+
+    private void heapInsert(int v) {
+        heap[heapSize] = v;
+        heapIndex[v] = heapSize;
+        heapUp(heapSize++);
+    }
+
+    private int heapRemoveMax() {
+        int top = heap[0];
+        heapIndex[top] = -1;
+        heapSize--;
+        if (heapSize > 0) {
+            heap[0] = heap[heapSize];
+            heapIndex[heap[0]] = 0;
+            heapDown(0);
+        }
+        return top;
+    }
+
+    private void heapUp(int i) {
+        int v = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >> 1;
+            if (activity[heap[parent]] >= activity[v]) {
+                break;
+            }
+            heap[i] = heap[parent];
+            heapIndex[heap[i]] = i;
+            i = parent;
+        }
+        heap[i] = v;
+        heapIndex[v] = i;
+    }
+
+    private void heapDown(int i) {
+        int v = heap[i];
+        while (2 * i + 1 < heapSize) {
+            int child = 2 * i + 1;
+            if (child + 1 < heapSize && activity[heap[child + 1]] > activity[heap[child]]) {
+                child++;
+            }
+            if (activity[heap[child]] <= activity[v]) {
+                break;
+            }
+            heap[i] = heap[child];
+            heapIndex[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = v;
+        heapIndex[v] = i;
+    }
+}
@@ -0,0 +1,344 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Solves sudoku boards of any square size by encoding them as CNF and handing them to the embedded CDCL SatSolver.
+ * Variable (row, col, value) is true when the cell at (row, col) holds value. Values already ruled out by a given
+ * clue in the same row, column, or box never get a variable, which keeps large boards small.
+ * Small groups get pairwise at-most-one clauses; larger ones use the commander encoding, which splits a group into
+ * about sqrt(n) parts with one auxiliary variable each, so a 64-cell group needs a few hundred clauses instead of 2016.
+ */
+public class SatSudokuSolver {
+    private static final int PAIRWISE_LIMIT = 9; // largest group that still gets pairwise at-most-one clauses
+
+    private int size;
+    private int sqrtSize;
+    private int[][] board;
+    private int[] variables; // (row * size + col) * size + (value - 1) -> SAT variable, 0 if ruled out
+    private SatSolver sat;
+    private int nextVariable; // the last SAT variable handed out so far
+
+    /**
+     * Constructor for the SatSudokuSolver class that takes a pre-generated board
+     * @param board a square 2D array of integers representing the board
+     * @throws IllegalArgumentException if the board's length is not a square
+     */
+    public SatSudokuSolver(int[][] board) throws IllegalArgumentException {
+        this.size = board.length;
+
+        if (Math.sqrt(size) != (int) Math.sqrt(size) || board[0].length != size) {
+            throw new IllegalArgumentException("Size of the board must be a square");
+        } else {
+            this.sqrtSize = (int) Math.sqrt(size);
+        }
+
+        this.board = new int[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                this.board[i][j] = board[i][j];
+            }
+        }
+    }
+
+    /**
+     * Encodes the board as CNF, solves it, and decodes the model back into the board
+     * @return true if the board is solved, false otherwise
+     * @throws Exception if the starting board is invalid
+     */
+    public boolean solve() throws Exception {
+        if (!isValidStartingBoard()) {
+            throw new Exception("Invalid starting board");
+        }
+
+        encode();
+        if (!sat.solve()) {
+            return false;
+        }
+
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                for (int value = 1; value <= size; value++) {
+                    int var = variables[index(i, j, value)];
+                    if (var != 0 && sat.value(var)) {
+                        board[i][j] = value;
+                        break;
+                    }
+                }
+            }
+        }
+        return isValidSolution();
+    }
+
+    public int[][] getBoard() {
+        return board;
+    }
+
+    /**
+     * Gets the number of branching decisions made by the SAT solver
+     * @return the number of decisions, or 0 if solve() has not been called
+     */
+    public long getDecisions() {
+        return sat == null ? 0 : sat.getDecisions();
+    }
+
+    /**
+     * Gets the number of conflicts found by the SAT solver
+     * @return the number of conflicts, or 0 if solve() has not been called
+     */
+    public long getConflicts() {
+        return sat == null ? 0 : sat.getConflicts();
+    }
+
+    @Override
+    public String toString() {
+        return SudokuSolver.toString(board);
+    }
+
+    /**
+     * Compares the board to a given (ideally solution) board
+     * @param solutionBoard
+     * @return true if every cell is the same, false otherwise
+     */
+    public boolean equals(int[][] solutionBoard) {
+        return SudokuSolver.equals(board, solutionBoard);
+    }
+
+    /**
+     * Checks if the sudoku board is completely filled in and no row, column, or box repeats a value
+     * @return true if the board is solved with a valid solution, false otherwise
+     */
+    public boolean isValidSolution() {
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                if (board[i][j] < 1 || board[i][j] > size) {
+                    return false;
+                }
+            }
+        }
+        return isValidStartingBoard();
+    }
+
+    // MARK: - Helper methods for encoding
+
+    /**
+     * Builds the CNF: every cell has a value, every cell has at most one value, every row, column, and box
+     * has every value exactly once, and every given clue is fixed by a unit clause
+     */
+    private void encode() {
+        boolean[] allowed = new boolean[size * size * size];
+        Arrays.fill(allowed, true);
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                int given = board[i][j];
+                if (given == 0) {
+                    continue;
+                }
+                for (int value = 1; value <= size; value++) {
+                    if (value != given) {
+                        allowed[index(i, j, value)] = false;
+                    }
+                }
+                for (int k = 0; k < size; k++) {
+                    if (k != j && board[i][k] == 0) {
+                        allowed[index(i, k, given)] = false;
+                    }
+                    if (k != i && board[k][j] == 0) {
+                        allowed[index(k, j, given)] = false;
+                    }
+                }
+                int startRow = i - i % sqrtSize;
+                int startCol = j - j % sqrtSize;
+                for (int r = startRow; r < startRow + sqrtSize; r++) {
+                    for (int c = startCol; c < startCol + sqrtSize; c++) {
+                        if ((r != i || c != j) && board[r][c] == 0) {
+                            allowed[index(r, c, given)] = false;
+                        }
+                    }
+                }
+            }
+        }
+
+        variables = new int[allowed.length];
+        int numVariables = 0;
+        for (int k = 0; k < allowed.length; k++) {
+            if (allowed[k]) {
+                variables[k] = ++numVariables;
+            }
+        }
+
+        ArrayList<int[]> groups = new ArrayList<int[]>(4 * size * size);
+        int[] group = new int[size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                // cell (i, j) has exactly one value
+                int count = 0;
+                for (int value = 1; value <= size; value++) {
+                    int var = variables[index(i, j, value)];
+                    if (var != 0) {
+                        group[count++] = var;
+                    }
+                }
+                groups.add(Arrays.copyOf(group, count));
+            }
+        }
+
+        for (int value = 1; value <= size; value++) {
+            for (int k = 0; k < size; k++) {
+                // row k has value exactly once
+                int count = 0;
+                for (int j = 0; j < size; j++) {
+                    int var = variables[index(k, j, value)];
+                    if (var != 0) {
+                        group[count++] = var;
+                    }
+                }
+                groups.add(Arrays.copyOf(group, count));
+
+                // column k has value exactly once
+                count = 0;
+                for (int i = 0; i < size; i++) {
+                    int var = variables[index(i, k, value)];
+                    if (var != 0) {
+                        group[count++] = var;
+                    }
+                }
+                groups.add(Arrays.copyOf(group, count));
+
+                // box k has value exactly once
+                count = 0;
+                int startRow = (k / sqrtSize) * sqrtSize;
+                int startCol = (k % sqrtSize) * sqrtSize;
+                for (int r = startRow; r < startRow + sqrtSize; r++) {
+                    for (int c = startCol; c < startCol + sqrtSize; c++) {
+                        int var = variables[index(r, c, value)];
+                        if (var != 0) {
+                            group[count++] = var;
+                        }
+                    }
+                }
+                groups.add(Arrays.copyOf(group, count));
+            }
+        }
+
+        // the commander variables are counted up front, since SatSolver has a fixed number of variables
+        int numAuxiliary = 0;
+        for (int[] g : groups) {
+            numAuxiliary += countCommanders(g.length);
+        }
+        sat = new SatSolver(Math.max(numVariables + numAuxiliary, 1));
+        nextVariable = numVariables;
+
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                if (board[i][j] != 0) {
+                    sat.addClause(variables[index(i, j, board[i][j])]);
+                }
+            }
+        }
+        for (int[] g : groups) {
+            addExactlyOne(g);
+        }
+    }
+
+    /**
+     * Adds an at-least-one clause and at-most-one clauses over a group of variables
+     * @param group the variables
+     */
+    private void addExactlyOne(int[] group) {
+        if (group.length == 0) {
+            sat.addClause(); // nothing can fill this cell or unit, so the board is unsatisfiable
+            return;
+        }
+        sat.addClause(group);
+        addAtMostOne(group);
+    }
+
+    /**
+     * Adds at-most-one clauses over a group of variables: pairwise clauses for a small group, otherwise the commander
+     * encoding, where each part of the group gets a commander that is true if any variable in the part is, the
+     * variables within a part exclude each other pairwise, and at most one commander may be true.
+     * Search never branches on a commander, since propagation sets it whenever a clause depends on it
+     * @param group the variables
+     */
+    private void addAtMostOne(int[] group) {
+        if (group.length <= PAIRWISE_LIMIT) {
+            addPairwise(group, 0, group.length);
+            return;
+        }
+
+        int partSize = (int) Math.ceil(Math.sqrt(group.length));
+        int[] commanders = new int[(group.length + partSize - 1) / partSize];
+        for (int k = 0; k < commanders.length; k++) {
+            int commander = ++nextVariable;
+            sat.setDecisionVariable(commander, false);
+            commanders[k] = commander;
+
+            int start = k * partSize;
+            int end = Math.min(group.length, start + partSize);
+            for (int a = start; a < end; a++) {
+                sat.addClause(-group[a], commander);
+            }
+            addPairwise(group, start, end);
+        }
+        addAtMostOne(commanders);
+    }
+
+    private void addPairwise(int[] group, int start, int end) {
+        for (int a = start; a < end; a++) {
+            for (int b = a + 1; b < end; b++) {
+                sat.addClause(-group[a], -group[b]);
+            }
+        }
+    }
+
+    /**
+     * Counts the commander variables addAtMostOne() creates for a group
+     * @param count the number of variables in the group
+     * @return the number of auxiliary variables
+     */
+    private static int countCommanders(int count) {
+        if (count <= PAIRWISE_LIMIT) {
+            return 0;
+        }
+        int partSize = (int) Math.ceil(Math.sqrt(count));
+        int parts = (count + partSize - 1) / partSize;
+        return parts + countCommanders(parts);
+    }
+
+    private int index(int row, int col, int value) {
+        return (row * size + col) * size + (value - 1);
+    }
+
+    /**
+     * Checks that no given clue repeats a value in its row, column, or box
+     * @return true if the assigned cells are consistent, false otherwise
+     */
+    private boolean isValidStartingBoard() {
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                int value = board[i][j];
+                if (value == 0) {
+                    continue;
+                }
+                if (value < 0 || value > size) {
+                    return false;
+                }
+                for (int k = 0; k < size; k++) {
+                    if ((k != j && board[i][k] == value) || (k != i && board[k][j] == value)) {
+                        return false;
+                    }
+                }
+                int startRow = i - i % sqrtSize;
+                int startCol = j - j % sqrtSize;
+                for (int r = startRow; r < startRow + sqrtSize; r++) {
+                    for (int c = startCol; c < startCol + sqrtSize; c++) {
+                        if ((r != i || c != j) && board[r][c] == value) {
+                            return false;
+                        }
+                    }
+                }
+            }
+        }
+        return true;
+    }
+}
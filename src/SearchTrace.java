@@ -0,0 +1,384 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Records the search events of a SudokuSolver so slow solves can be diagnosed after the fact:
+ * every choice (cell, value, depth), AC-3 wipeout (cell whose domain became empty), backtrack, and solution.
+ * Events are packed into longs in a preallocated ring buffer that keeps the most recent ones, and exact per-cell and
+ * per-depth counters are kept next to it, so recording never allocates and costs a few array writes per event.
+ * Attach one with SudokuSolver.setTrace() only for the puzzles that should be traced, e.g. a sample of traffic.
+ * A trace can be written to a compact binary file, read back, and turned into a readable summary.
+ */
+public class SearchTrace {
+    public static final int CHOICE = 1;
+    public static final int WIPEOUT = 2;
+    public static final int BACKTRACK = 3;
+    public static final int SOLUTION = 4;
+    private static final String[] TYPE_NAMES = { "", "choice", "wipeout", "backtrack", "solution" };
+
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    private static final long MAGIC = 0x5355444f4b555452L; // "SUDOKUTR"
+    private static final int VERSION = 1;
+
+    private int size;
+    private int cellCount;
+    private long[] events;
+    private int mask;
+    private long recorded;
+
+    private long[] typeCounts;
+    private long[] cellWipeouts;
+    private long[] cellBacktracks;
+    private long[] depthNodes;
+    private long[] depthChoices;
+    private int maxDepth;
+
+    /**
+     * Constructor for the SearchTrace class
+     * @param size the size of the boards that will be traced
+     * @param capacity the number of most recent events to keep; rounded up to a power of two
+     * @throws IllegalArgumentException if the capacity is not positive
+     */
+    public SearchTrace(int size, int capacity) throws IllegalArgumentException {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 1 and " + (1 << 30));
+        }
+        this.size = size;
+        this.cellCount = size * size;
+        this.events = new long[capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1];
+        this.mask = events.length - 1;
+        this.typeCounts = new long[TYPE_NAMES.length];
+        this.cellWipeouts = new long[cellCount];
+        this.cellBacktracks = new long[cellCount];
+        this.depthNodes = new long[cellCount + 1];
+        this.depthChoices = new long[cellCount + 1];
+    }
+
+    /**
+     * Forgets every event and counter, e.g. before tracing the next puzzle. Without it, counters add up over puzzles
+     */
+    public void clear() {
+        recorded = 0;
+        maxDepth = 0;
+        for (int k = 0; k < typeCounts.length; k++) {
+            typeCounts[k] = 0;
+        }
+        for (int cell = 0; cell < cellCount; cell++) {
+            cellWipeouts[cell] = 0;
+            cellBacktracks[cell] = 0;
+        }
+        for (int depth = 0; depth <= cellCount; depth++) {
+            depthNodes[depth] = 0;
+            depthChoices[depth] = 0;
+        }
+    }
+
+    // MARK: - Recording, called by SudokuSolver
+
+    /**
+     * Records a value being tried for a cell
+     * @param cell row * size + col
+     * @param value
+     * @param depth the number of choices above this one
+     */
+    public void choice(int cell, int value, int depth) {
+        depthChoices[depth]++;
+        if (depth > maxDepth) {
+            maxDepth = depth;
+        }
+        add(CHOICE, cell, value, depth);
+    }
+
+    /**
+     * Records AC-3 removing the last value of a cell's domain
+     * @param cell row * size + col
+     * @param depth the number of choices in effect
+     */
+    public void wipeout(int cell, int depth) {
+        cellWipeouts[cell]++;
+        add(WIPEOUT, cell, 0, depth);
+    }
+
+    /**
+     * Records the search giving up on a cell after every value failed
+     * @param cell row * size + col
+     * @param depth the number of choices above the cell
+     */
+    public void backtrack(int cell, int depth) {
+        cellBacktracks[cell]++;
+        depthNodes[depth]++;
+        if (depth > maxDepth) {
+            maxDepth = depth;
+        }
+        add(BACKTRACK, cell, 0, depth);
+    }
+
+    /**
+     * Records a solution
+     * @param depth the number of choices that led to it
+     */
+    public void solution(int depth) {
+        // every choice point on the path to a solution is a node that did not backtrack
+        for (int d = 0; d < depth; d++) {
+            depthNodes[d]++;
+        }
+        add(SOLUTION, 0, 0, depth);
+    }
+
+    private void add(int type, int cell, int value, int depth) {
+        typeCounts[type]++;
+        events[(int) recorded & mask] = type | (long) value << 8 | (long) cell << 16 | (long) depth << 32;
+        recorded++;
+    }
+
+    // MARK: - Reading events
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Gets the number of events recorded since the last clear(), including those no longer kept
+     * @return the number of events
+     */
+    public long getRecorded() {
+        return recorded;
+    }
+
+    /**
+     * Gets the number of events still in the ring buffer
+     * @return at most the capacity
+     */
+    public int getEventCount() {
+        return (int) Math.min(recorded, events.length);
+    }
+
+    /**
+     * Gets a kept event, oldest first
+     * @param index between 0 and getEventCount() - 1
+     * @return the packed event; decode it with eventType(), eventCell(), eventValue(), and eventDepth()
+     */
+    public long getEvent(int index) {
+        return events[(int) (recorded - getEventCount() + index) & mask];
+    }
+
+    public static int eventType(long event) {
+        return (int) (event & 0xFF);
+    }
+
+    public static int eventValue(long event) {
+        return (int) (event >>> 8 & 0xFF);
+    }
+
+    public static int eventCell(long event) {
+        return (int) (event >>> 16 & 0xFFFF);
+    }
+
+    public static int eventDepth(long event) {
+        return (int) (event >>> 32 & 0xFFFF);
+    }
+
+    /**
+     * Gets the number of events of one type since the last clear()
+     * @param type CHOICE, WIPEOUT, BACKTRACK, or SOLUTION
+     * @return the count
+     */
+    public long getCount(int type) {
+        return typeCounts[type];
+    }
+
+    // MARK: - Dump file and summary
+
+    /**
+     * Writes the trace to a compact binary file: a header, the counters, and 6 bytes per kept event
+     * @param path the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void write(String path) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)));
+        try {
+            out.writeLong(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(size);
+            out.writeLong(recorded);
+            out.writeInt(getEventCount());
+            out.writeInt(maxDepth);
+            for (int type = CHOICE; type <= SOLUTION; type++) {
+                out.writeLong(typeCounts[type]);
+            }
+            for (int depth = 0; depth <= maxDepth; depth++) {
+                out.writeLong(depthNodes[depth]);
+                out.writeLong(depthChoices[depth]);
+            }
+
+            int conflictCells = 0;
+            for (int cell = 0; cell < cellCount; cell++) {
+                if (cellWipeouts[cell] != 0 || cellBacktracks[cell] != 0) {
+                    conflictCells++;
+                }
+            }
+            out.writeInt(conflictCells);
+            for (int cell = 0; cell < cellCount; cell++) {
+                if (cellWipeouts[cell] != 0 || cellBacktracks[cell] != 0) {
+                    out.writeShort(cell);
+                    out.writeLong(cellWipeouts[cell]);
+                    out.writeLong(cellBacktracks[cell]);
+                }
+            }
+
+            for (int index = 0; index < getEventCount(); index++) {
+                long event = getEvent(index);
+                out.writeByte(eventType(event));
+                out.writeByte(eventValue(event));
+                out.writeShort(eventCell(event));
+                out.writeShort(eventDepth(event));
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads a file written by write()
+     * @param path the file to read
+     * @return the trace, with the same events and counters as when it was written
+     * @throws IOException if the file cannot be read, is not a trace, or holds values no trace can have
+     */
+    public static SearchTrace read(String path) throws IOException {
+        long fileLength = new File(path).length();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path)));
+        try {
+            if (in.readLong() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("'" + path + "' is not a search trace");
+            }
+            int size = in.readInt();
+            if (size < 1 || size > Long.SIZE) {
+                throw corrupt(path, "board size " + size + " is not between 1 and " + Long.SIZE);
+            }
+            int cellCount = size * size;
+            long recorded = in.readLong();
+            int kept = in.readInt();
+            // every kept event takes 6 bytes, so a count the file cannot hold is not allocated
+            if (kept < 0 || kept > recorded || kept > fileLength / 6) {
+                throw corrupt(path, kept + " kept events do not fit " + recorded + " recorded events in " + fileLength + " bytes");
+            }
+            SearchTrace trace = new SearchTrace(size, Math.max(kept, 1));
+            trace.recorded = recorded;
+            trace.maxDepth = in.readInt();
+            if (trace.maxDepth < 0 || trace.maxDepth > cellCount) {
+                throw corrupt(path, "max depth " + trace.maxDepth + " is not between 0 and " + cellCount);
+            }
+            for (int type = CHOICE; type <= SOLUTION; type++) {
+                trace.typeCounts[type] = in.readLong();
+            }
+            for (int depth = 0; depth <= trace.maxDepth; depth++) {
+                trace.depthNodes[depth] = in.readLong();
+                trace.depthChoices[depth] = in.readLong();
+            }
+
+            int conflictCells = in.readInt();
+            if (conflictCells < 0 || conflictCells > cellCount) {
+                throw corrupt(path, conflictCells + " conflict cells on a board of " + cellCount + " cells");
+            }
+            for (int k = 0; k < conflictCells; k++) {
+                int cell = in.readUnsignedShort();
+                if (cell >= cellCount) {
+                    throw corrupt(path, "conflict cell " + cell + " is outside a board of " + cellCount + " cells");
+                }
+                trace.cellWipeouts[cell] = in.readLong();
+                trace.cellBacktracks[cell] = in.readLong();
+            }
+
+            for (int index = 0; index < kept; index++) {
+                long type = in.readUnsignedByte();
+                long value = in.readUnsignedByte();
+                long cell = in.readUnsignedShort();
+                long depth = in.readUnsignedShort();
+                if (type < CHOICE || type > SOLUTION || value > size || cell >= cellCount || depth > cellCount) {
+                    throw corrupt(path, "event " + index + " (type " + type + ", value " + value + ", cell " + cell
+                            + ", depth " + depth + ") does not fit a board of size " + size);
+                }
+                trace.events[(int) (recorded - kept + index) & trace.mask] = type | value << 8 | cell << 16 | depth << 32;
+            }
+            return trace;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static IOException corrupt(String path, String problem) {
+        return new IOException("'" + path + "' is corrupt: " + problem);
+    }
+
+    /**
+     * Describes the trace for a person: event counts, the cells involved in the most conflicts,
+     * the average branching factor at each depth, and the last few events
+     * @param topCells how many conflict cells to list
+     * @param lastEvents how many of the most recent events to list
+     * @return the summary, one item per line
+     */
+    public String summary(int topCells, int lastEvents) {
+        StringBuilder out = new StringBuilder();
+        out.append("Events: ").append(recorded).append(" recorded, ").append(getEventCount()).append(" kept\n");
+        out.append("Choices: ").append(typeCounts[CHOICE]).append(", wipeouts: ").append(typeCounts[WIPEOUT])
+                .append(", backtracks: ").append(typeCounts[BACKTRACK]).append(", solutions: ").append(typeCounts[SOLUTION])
+                .append(", max depth: ").append(maxDepth).append('\n');
+
+        out.append("Top conflict cells (wipeouts + backtracks):\n");
+        boolean[] listed = new boolean[cellCount];
+        for (int k = 0; k < topCells; k++) {
+            int best = -1;
+            for (int cell = 0; cell < cellCount; cell++) {
+                if (!listed[cell] && (best == -1 || conflicts(cell) > conflicts(best))) {
+                    best = cell;
+                }
+            }
+            if (best == -1 || conflicts(best) == 0) {
+                break;
+            }
+            listed[best] = true;
+            out.append(String.format("  (%d, %d): %d wipeouts, %d backtracks%n", best / size, best % size,
+                    cellWipeouts[best], cellBacktracks[best]));
+        }
+
+        out.append("Branching factor by depth (choices / nodes):\n");
+        int forced = 0;
+        for (int depth = 0; depth <= maxDepth; depth++) {
+            if (depthNodes[depth] > 0 && depthChoices[depth] != depthNodes[depth]) {
+                out.append(String.format("  %3d: %d / %d = %.2f%n", depth, depthChoices[depth], depthNodes[depth],
+                        (double) depthChoices[depth] / depthNodes[depth]));
+            } else if (depthNodes[depth] > 0) {
+                forced++;
+            }
+        }
+        if (forced > 0) {
+            out.append("  ").append(forced).append(" other depth(s) tried exactly one value per node\n");
+        }
+
+        int count = getEventCount();
+        out.append("Last events:\n");
+        for (int index = Math.max(0, count - lastEvents); index < count; index++) {
+            long event = getEvent(index);
+            int type = eventType(event);
+            out.append("  ").append(TYPE_NAMES[type]).append(" depth ").append(eventDepth(event));
+            if (type != SOLUTION) {
+                out.append(" cell (").append(eventCell(event) / size).append(", ").append(eventCell(event) % size).append(')');
+            }
+            if (type == CHOICE) {
+                out.append(" = ").append(eventValue(event));
+            }
+            out.append('\n');
+        }
+        return out.toString();
+    }
+
+    private long conflicts(int cell) {
+        return cellWipeouts[cell] + cellBacktracks[cell];
+    }
+}
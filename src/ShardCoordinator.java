@@ -0,0 +1,515 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+
+/**
+ * Coordinator side of a sharded batch run: splits a dataset (or a range of its rows) into shards of consecutive rows
+ * and hands them out over TCP to ShardWorker processes, which may run on this machine or others.
+ * Shards are read from the input only when a worker asks for one, so memory holds just the shards in flight.
+ * A worker's results for a shard are only written to a part file once the whole shard has arrived;
+ * if the worker disconnects, stops answering, or sends a malformed answer first, the shard goes to the next worker that asks,
+ * and a shard that fails on MAX_SHARD_ATTEMPTS workers fails the run instead of taking down every worker in turn.
+ * When every shard is done the parts are concatenated in input order into one output file with the same columns as
+ * BatchSolver, and the latency and status statistics of every shard are merged into one SolverMetrics.
+ */
+public class ShardCoordinator {
+    public static final int DEFAULT_SHARD_SIZE = 10000;
+    private static final String PART_SUFFIX = ".part-";
+    private static final int SHARD_TIMEOUT_MILLIS = 10 * 60 * 1000;
+    private static final long IDLE_TIMEOUT_NANOS = 60_000_000_000L;
+    public static final int MAX_SHARD_ATTEMPTS = 3;
+
+    private String inputPath;
+    private String outputPath;
+    private String engine;
+    private int shardSize;
+    private long firstRow;
+    private long lastRow;
+
+    private ServerSocket server;
+    private BufferedReader input;
+    private long nextRow;
+    private boolean inputDone;
+    private ArrayDeque<Shard> retries;
+    private int issued;
+    private int completed;
+    private int activeWorkers;
+    private long idleSince;
+    private IOException error;
+
+    private SolverMetrics metrics;
+    private LinkedHashMap<String, Long> workerRows;
+    private long rows;
+    private long solved;
+    private long failed;
+    private long invalid;
+    private long nodes;
+    private long reassigned;
+
+    /**
+     * Constructor for the ShardCoordinator class
+     * @param inputPath the dataset file, one "puzzle,solution" row per line (a header line is skipped)
+     * @param outputPath the CSV file to write the merged results to
+     * @param engine the engine workers solve with, one of BatchSolver.ENGINES
+     * @param shardSize the number of rows per shard
+     * @param firstRow the first dataset row to solve, counting from 1
+     * @param lastRow the last dataset row to solve, or Long.MAX_VALUE for the rest of the file
+     */
+    public ShardCoordinator(String inputPath, String outputPath, String engine, int shardSize, long firstRow, long lastRow) {
+        if (shardSize < 1 || firstRow < 1 || lastRow < firstRow) {
+            throw new IllegalArgumentException("Shard size and row range must be positive");
+        }
+        this.inputPath = inputPath;
+        this.outputPath = outputPath;
+        this.engine = engine;
+        this.shardSize = shardSize;
+        this.firstRow = firstRow;
+        this.lastRow = lastRow;
+        this.retries = new ArrayDeque<Shard>();
+        this.metrics = new SolverMetrics();
+        this.workerRows = new LinkedHashMap<String, Long>();
+    }
+
+    /**
+     * Opens the input and starts accepting workers
+     * @param bindAddress the address to listen on, e.g. 127.0.0.1 for local workers only
+     * @param port the port to listen on, or 0 for any free port
+     * @return the port workers should connect to
+     * @throws IOException if the input cannot be opened or the port cannot be bound
+     */
+    public int start(String bindAddress, int port) throws IOException {
+        input = new BufferedReader(new FileReader(inputPath), 1 << 20);
+        nextRow = 1;
+        server = new ServerSocket(port, 50, InetAddress.getByName(bindAddress));
+        idleSince = System.nanoTime();
+
+        Thread acceptThread = new Thread(this::acceptWorkers, "sudoku-coordinator");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+        return server.getLocalPort();
+    }
+
+    /**
+     * Waits until every shard has been solved, then merges the parts into the output.
+     * If the run fails instead, the part files written so far are deleted
+     * @throws IOException if no worker is connected for a minute, a shard fails on too many workers,
+     *                     a part cannot be written, or the output cannot be merged
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void await() throws IOException, InterruptedException {
+        boolean merged = false;
+        try {
+            try {
+                synchronized (this) {
+                    while (!isDone()) {
+                        if (error != null) {
+                            throw error;
+                        }
+                        if (activeWorkers == 0 && System.nanoTime() - idleSince > IDLE_TIMEOUT_NANOS) {
+                            error = new IOException("No worker has been connected for " + IDLE_TIMEOUT_NANOS / 1_000_000_000L + " s");
+                            notifyAll();
+                            throw error;
+                        }
+                        wait(1000);
+                    }
+                    notifyAll(); // idle workers are told to stop
+                }
+            } finally {
+                server.close();
+                input.close();
+            }
+            mergeParts();
+            merged = true;
+        } finally {
+            if (!merged) {
+                failRun(new IOException("The run was stopped")); // workers still writing a part delete it themselves
+                deleteParts();
+            }
+        }
+    }
+
+    public SolverMetrics getMetrics() {
+        return metrics;
+    }
+
+    public synchronized long getRows() {
+        return rows;
+    }
+
+    public synchronized long getSolved() {
+        return solved;
+    }
+
+    public synchronized long getFailed() {
+        return failed;
+    }
+
+    public synchronized long getInvalid() {
+        return invalid;
+    }
+
+    /**
+     * Gets the search nodes the workers reported, summed over every row
+     * @return the total
+     */
+    public synchronized long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Gets the number of shards that were handed to another worker after their first worker failed
+     * @return the count
+     */
+    public synchronized long getReassigned() {
+        return reassigned;
+    }
+
+    /**
+     * Gets the rows solved by each worker, in the order the workers connected
+     * @return a copy of the rows per worker name
+     */
+    public synchronized LinkedHashMap<String, Long> getWorkerRows() {
+        return new LinkedHashMap<String, Long>(workerRows);
+    }
+
+    // MARK: - Helper methods for workers
+
+    private void acceptWorkers() {
+        try {
+            while (true) {
+                Socket socket = server.accept();
+                Thread thread = new Thread(() -> serveWorker(socket), "sudoku-coordinator-" + socket.getPort());
+                thread.setDaemon(true);
+                thread.start();
+            }
+        } catch (IOException e) {
+            // the server socket was closed by await()
+        }
+    }
+
+    /**
+     * Hands shards to one worker until there are none left, putting its current shard back if the worker fails
+     * @param socket the worker's connection
+     */
+    private void serveWorker(Socket socket) {
+        Shard shard = null;
+        boolean connected = false;
+        try {
+            socket.setSoTimeout(SHARD_TIMEOUT_MILLIS);
+            socket.setTcpNoDelay(true);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII), 1 << 16);
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII), 1 << 16);
+
+            String line = reader.readLine();
+            if (line == null || !line.startsWith("HELLO ")) {
+                throw new IOException("Unexpected greeting from worker: " + line);
+            }
+            String name = line.substring("HELLO ".length());
+            workerConnected(name);
+            connected = true;
+            writer.write("ENGINE " + engine + "\n");
+            writer.flush();
+
+            LatencyHistogram histogram = metrics.recorder();
+            while ((shard = nextShard()) != null) {
+                writer.write("SHARD " + shard.id + " " + shard.count + "\n");
+                for (int k = 0; k < shard.count; k++) {
+                    writer.write(shard.puzzles[k]);
+                    writer.write('\n');
+                }
+                writer.flush();
+
+                receiveShard(shard, reader);
+                try {
+                    writePart(shard);
+                } catch (IOException e) {
+                    failRun(e); // a local disk problem, not the worker's fault
+                    break;
+                }
+                completeShard(shard, name, histogram);
+                shard = null;
+            }
+            writer.write("END\n");
+            writer.flush();
+        } catch (IOException e) {
+            // the worker died, hung, or sent something unexpected; its shard goes to another worker
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            workerDisconnected(shard, connected);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // nothing more to do with this worker
+            }
+        }
+    }
+
+    /**
+     * Reads a worker's rows for a shard
+     * @param shard the shard the worker was sent
+     * @param reader the worker's connection
+     * @throws IOException if the worker's answer is incomplete or malformed
+     */
+    private void receiveShard(Shard shard, BufferedReader reader) throws IOException {
+        String line = reader.readLine();
+        if (line == null) {
+            throw new EOFException("Worker closed the connection");
+        }
+        if (!line.equals("RESULT " + shard.id + " " + shard.count)) {
+            throw new IOException("Unexpected answer from worker: " + line);
+        }
+
+        for (int k = 0; k < shard.count; k++) {
+            line = reader.readLine();
+            if (line == null) {
+                throw new EOFException("Worker closed the connection in the middle of shard " + shard.id);
+            }
+            // puzzle,solution,status,nanos,nodes
+            String puzzle = shard.puzzles[k];
+            if (line.length() <= puzzle.length() || line.charAt(puzzle.length()) != ',' || !line.startsWith(puzzle)) {
+                throw new IOException("Row " + k + " of shard " + shard.id + " is not for the puzzle that was sent: " + line);
+            }
+            int nodesComma = line.lastIndexOf(',');
+            int nanosComma = nodesComma < 0 ? -1 : line.lastIndexOf(',', nodesComma - 1);
+            int statusComma = nanosComma < 0 ? -1 : line.lastIndexOf(',', nanosComma - 1);
+            byte status = statusComma < 0 ? -1 : BatchSolver.parseStatus(line.substring(statusComma + 1, nanosComma));
+            if (status < 0) {
+                throw new IOException("Malformed row from worker: " + line);
+            }
+            try {
+                shard.nanos[k] = Long.parseLong(line.substring(nanosComma + 1, nodesComma));
+                shard.nodes[k] = Long.parseLong(line.substring(nodesComma + 1));
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed row from worker: " + line);
+            }
+            shard.status[k] = status;
+            shard.rows[k] = line;
+        }
+    }
+
+    /**
+     * Writes a received shard to its part file through a temporary file, so a part on disk is always complete.
+     * If the run has failed in the meantime, the part is deleted again so none are left behind
+     * @param shard the shard
+     * @throws IOException if the part cannot be written
+     */
+    private void writePart(Shard shard) throws IOException {
+        Path temp = Paths.get(partPath(shard.id) + ".tmp");
+        BufferedWriter part = new BufferedWriter(new FileWriter(temp.toFile()), 1 << 16);
+        try {
+            for (int k = 0; k < shard.count; k++) {
+                part.write(shard.rows[k]);
+                part.write('\n');
+                shard.rows[k] = null;
+            }
+        } finally {
+            part.close();
+        }
+        Files.move(temp, Paths.get(partPath(shard.id)), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        synchronized (this) {
+            if (error != null) {
+                Files.deleteIfExists(Paths.get(partPath(shard.id)));
+            }
+        }
+    }
+
+    /**
+     * Gets a shard to hand out: one whose worker failed, or else the next rows of the input.
+     * Waits while every remaining shard is still out with some worker, in case one of them fails
+     * @return the shard, or null once every shard is done
+     */
+    private synchronized Shard nextShard() throws IOException, InterruptedException {
+        while (true) {
+            if (isDone() || error != null) {
+                return null;
+            }
+            if (!retries.isEmpty()) {
+                reassigned++;
+                Shard shard = retries.poll();
+                shard.attempts++;
+                return shard;
+            }
+            if (!inputDone) {
+                Shard shard = readShard();
+                if (shard != null) {
+                    issued++;
+                    shard.attempts++;
+                    return shard;
+                }
+                inputDone = true;
+                notifyAll();
+                continue;
+            }
+            wait();
+        }
+    }
+
+    private Shard readShard() throws IOException {
+        Shard shard = null;
+        String line;
+        while (nextRow <= lastRow && (shard == null || shard.count < shardSize) && (line = input.readLine()) != null) {
+            if (line.isEmpty() || !Character.isLetterOrDigit(line.charAt(0)) || line.startsWith("quizzes")) {
+                continue; // header or blank line
+            }
+            if (nextRow++ < firstRow) {
+                continue;
+            }
+            if (shard == null) {
+                shard = new Shard(issued, shardSize);
+            }
+            int comma = line.indexOf(',');
+            shard.puzzles[shard.count++] = comma < 0 ? line : line.substring(0, comma);
+        }
+        return shard;
+    }
+
+    private void completeShard(Shard shard, String name, LatencyHistogram histogram) {
+        for (int k = 0; k < shard.count; k++) {
+            metrics.record(histogram, shard.nanos[k], shard.status[k]);
+        }
+        synchronized (this) {
+            completed++;
+            rows += shard.count;
+            for (int k = 0; k < shard.count; k++) {
+                nodes += shard.nodes[k];
+                if (shard.status[k] == BatchSolver.STATUS_SOLVED) {
+                    solved++;
+                } else if (shard.status[k] == BatchSolver.STATUS_FAILED) {
+                    failed++;
+                } else {
+                    invalid++;
+                }
+            }
+            workerRows.put(name, workerRows.get(name) + shard.count);
+            notifyAll();
+        }
+    }
+
+    private synchronized void failRun(IOException e) {
+        if (error == null) {
+            error = e;
+        }
+        notifyAll();
+    }
+
+    private synchronized void workerConnected(String name) {
+        activeWorkers++;
+        if (!workerRows.containsKey(name)) {
+            workerRows.put(name, 0L);
+        }
+    }
+
+    private synchronized void workerDisconnected(Shard shard, boolean connected) {
+        if (shard != null && shard.attempts < MAX_SHARD_ATTEMPTS) {
+            retries.add(shard);
+        } else if (shard != null) {
+            failRun(new IOException("Shard " + shard.id + " (" + shard.count + " rows) failed on " + shard.attempts
+                    + " workers; check that its puzzles are well-formed"));
+        }
+        if (connected && --activeWorkers == 0) {
+            idleSince = System.nanoTime();
+        }
+        notifyAll();
+    }
+
+    private boolean isDone() {
+        return inputDone && retries.isEmpty() && completed == issued;
+    }
+
+    // MARK: - Helper methods for the output
+
+    /**
+     * Writes the header and every part in shard order to the output, deleting the parts as it goes
+     * @throws IOException if a part cannot be read or the output cannot be written
+     */
+    private void mergeParts() throws IOException {
+        FileChannel output = FileChannel.open(Paths.get(outputPath), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            ByteBuffer header = ByteBuffer.wrap(BatchSolver.HEADER.getBytes(StandardCharsets.US_ASCII));
+            while (header.hasRemaining()) {
+                output.write(header);
+            }
+            for (int id = 0; id < issued; id++) {
+                Path part = Paths.get(partPath(id));
+                FileChannel channel = FileChannel.open(part, StandardOpenOption.READ);
+                try {
+                    long position = 0;
+                    long size = channel.size();
+                    while (position < size) {
+                        position += channel.transferTo(position, size - position, output);
+                    }
+                } finally {
+                    channel.close();
+                }
+                Files.delete(part);
+            }
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Deletes every part and temporary part file of this run, ignoring files that cannot be deleted
+     */
+    private void deleteParts() {
+        int parts;
+        synchronized (this) {
+            parts = issued;
+        }
+        for (int id = 0; id < parts; id++) {
+            try {
+                Files.deleteIfExists(Paths.get(partPath(id)));
+                Files.deleteIfExists(Paths.get(partPath(id) + ".tmp"));
+            } catch (IOException e) {
+                // leave it; the run has already failed
+            }
+        }
+    }
+
+    private String partPath(int id) {
+        return outputPath + PART_SUFFIX + id;
+    }
+
+    /**
+     * A range of consecutive dataset rows handed to one worker at a time
+     */
+    private static class Shard {
+        private int id;
+        private int count;
+        private int attempts;
+        private String[] puzzles;
+        private String[] rows;
+        private byte[] status;
+        private long[] nanos;
+        private long[] nodes;
+
+        private Shard(int id, int capacity) {
+            this.id = id;
+            this.puzzles = new String[capacity];
+            this.rows = new String[capacity];
+            this.status = new byte[capacity];
+            this.nanos = new long[capacity];
+            this.nodes = new long[capacity];
+        }
+    }
+}
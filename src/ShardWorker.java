@@ -0,0 +1,128 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.lang.management.ManagementFactory;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Worker side of a sharded batch run: connects to a ShardCoordinator, solves every shard it is sent,
+ * and sends back one output row per puzzle (puzzle,solution,status,nanos,nodes) until the coordinator says END.
+ * The protocol is plain text lines: the worker says "HELLO <name>", the coordinator answers "ENGINE <engine>",
+ * then sends "SHARD <id> <count>" followed by count puzzles, and the worker answers "RESULT <id> <count>" followed by count rows.
+ */
+public class ShardWorker {
+    private static final int CONNECT_ATTEMPTS = 50;
+    private static final long CONNECT_RETRY_MILLIS = 200;
+
+    private String host;
+    private int port;
+    private String name;
+    private long shards;
+    private long rows;
+
+    /**
+     * Constructor for the ShardWorker class
+     * @param host the coordinator's host
+     * @param port the coordinator's port
+     */
+    public ShardWorker(String host, int port) {
+        this.host = host;
+        this.port = port;
+        this.name = ManagementFactory.getRuntimeMXBean().getName(); // pid@hostname
+    }
+
+    /**
+     * Connects to the coordinator, retrying for a few seconds if it is not listening yet, and solves shards until it is done
+     * @throws IOException if the coordinator cannot be reached or the connection fails
+     */
+    public void run() throws IOException {
+        Socket socket = connect();
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII), 1 << 16);
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII), 1 << 16);
+            writer.write("HELLO " + name + "\n");
+            writer.flush();
+
+            String line = reader.readLine();
+            if (line == null || !line.startsWith("ENGINE ")) {
+                throw new IOException("Unexpected message from coordinator: " + line);
+            }
+            String engine = line.substring("ENGINE ".length());
+            if (!BatchSolver.isEngine(engine)) {
+                throw new IOException("Coordinator asked for unknown engine '" + engine + "'");
+            }
+
+            BatchSolver.RowSolver rowSolver = new BatchSolver.RowSolver(engine);
+            while ((line = reader.readLine()) != null && !line.equals("END")) {
+                String[] fields = line.split(" ");
+                int count = -1;
+                if (fields.length == 3 && fields[0].equals("SHARD")) {
+                    try {
+                        Integer.parseInt(fields[1]);
+                        count = Integer.parseInt(fields[2]);
+                    } catch (NumberFormatException e) {
+                        count = -1;
+                    }
+                }
+                if (count < 0) {
+                    throw new IOException("Unexpected message from coordinator: " + line);
+                }
+                String[] puzzles = new String[count];
+                for (int k = 0; k < count; k++) {
+                    puzzles[k] = reader.readLine();
+                    if (puzzles[k] == null) {
+                        throw new IOException("Coordinator closed the connection in the middle of shard " + fields[1]);
+                    }
+                }
+
+                writer.write("RESULT " + fields[1] + " " + count + "\n");
+                for (String puzzle : puzzles) {
+                    rowSolver.solve(puzzle);
+                    writer.write(rowSolver.toRow(puzzle));
+                    writer.write('\n');
+                }
+                writer.flush();
+                shards++;
+                rows += count;
+            }
+        } finally {
+            socket.close();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getShards() {
+        return shards;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    private Socket connect() throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Socket socket = new Socket(host, port);
+                socket.setTcpNoDelay(true);
+                return socket;
+            } catch (ConnectException e) {
+                if (attempt == CONNECT_ATTEMPTS) {
+                    throw e;
+                }
+                try {
+                    Thread.sleep(CONNECT_RETRY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Captures puzzles that take longer than a time or node threshold into a "hard corpus" file.
+ * Rows use the dataset CSV format with the stats appended (puzzle,solution,nanos,nodes), so the file can be
+ * passed straight to --bench --corpus or solved like any other dataset. Only solved puzzles are captured, so the solution
+ * column always holds a real solution; slow puzzles that failed or were invalid are only counted.
+ * Puzzles already in the file are not added again.
+ * Solver threads only compare two numbers and, for slow puzzles, offer them to a bounded queue without blocking;
+ * a background thread does the deduplication and file writes. If the queue is full the capture is dropped.
+ */
+public class SlowPuzzleRecorder {
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final Capture END = new Capture(null, null, 0, 0);
+
+    private String corpusPath;
+    private long thresholdNanos;
+    private long thresholdNodes;
+    private ArrayBlockingQueue<Capture> queue;
+    private HashSet<String> known;
+    private Thread writerThread;
+    private LongAdder captured;
+    private LongAdder dropped;
+    private LongAdder unsolved;
+    private volatile IOException writeError;
+
+    /**
+     * Constructor for the SlowPuzzleRecorder class
+     * @param corpusPath the hard corpus file; created if missing, appended to otherwise
+     * @param thresholdNanos puzzles that take longer than this are captured
+     * @param thresholdNodes puzzles that visit more search nodes than this are captured
+     */
+    public SlowPuzzleRecorder(String corpusPath, long thresholdNanos, long thresholdNodes) {
+        this.corpusPath = corpusPath;
+        this.thresholdNanos = thresholdNanos;
+        this.thresholdNodes = thresholdNodes;
+        this.queue = new ArrayBlockingQueue<Capture>(QUEUE_CAPACITY);
+        this.known = new HashSet<String>();
+        this.captured = new LongAdder();
+        this.dropped = new LongAdder();
+        this.unsolved = new LongAdder();
+    }
+
+    /**
+     * Loads the puzzles already in the corpus and starts the background writer
+     * @throws IOException if the existing corpus cannot be read
+     */
+    public void start() throws IOException {
+        if (new File(corpusPath).exists()) {
+            BufferedReader reader = new BufferedReader(new FileReader(corpusPath));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int comma = line.indexOf(',');
+                    known.add(comma < 0 ? line : line.substring(0, comma));
+                }
+            } finally {
+                reader.close();
+            }
+        }
+
+        writerThread = new Thread(this::writeCaptures, "sudoku-slow-puzzles");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Captures a puzzle if it crossed either threshold and was solved. Never blocks
+     * @param puzzle the puzzle string
+     * @param solution the solution string
+     * @param status the puzzle's BatchSolver status; anything but STATUS_SOLVED is counted instead of captured
+     * @param nanos the time spent solving it
+     * @param nodes the search nodes visited while solving it
+     * @return true if the puzzle was slow, whether or not it was captured
+     */
+    public boolean offer(String puzzle, String solution, byte status, long nanos, long nodes) {
+        if (nanos <= thresholdNanos && nodes <= thresholdNodes) {
+            return false;
+        }
+        if (status != BatchSolver.STATUS_SOLVED) {
+            unsolved.increment();
+        } else if (!queue.offer(new Capture(puzzle, solution, nanos, nodes))) {
+            dropped.increment();
+        }
+        return true;
+    }
+
+    /**
+     * Writes out every pending capture and stops the background writer
+     * @throws IOException if the corpus could not be written
+     * @throws InterruptedException if interrupted while waiting for the writer
+     */
+    public void close() throws IOException, InterruptedException {
+        // the writer stops early on an I/O error, so only wait for room while it is still draining
+        while (writerThread.isAlive() && !queue.offer(END, 100, TimeUnit.MILLISECONDS)) {
+            continue;
+        }
+        writerThread.join();
+        if (writeError != null) {
+            throw writeError;
+        }
+    }
+
+    /**
+     * Gets the number of new puzzles written to the corpus
+     * @return the count, not including duplicates of puzzles already in the corpus
+     */
+    public long getCaptured() {
+        return captured.sum();
+    }
+
+    /**
+     * Gets the number of slow puzzles that were not captured because the queue was full
+     * @return the count
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Gets the number of slow puzzles that were not captured because they were not solved
+     * @return the count
+     */
+    public long getUnsolved() {
+        return unsolved.sum();
+    }
+
+    private void writeCaptures() {
+        try {
+            BufferedWriter writer = new BufferedWriter(new FileWriter(corpusPath, true));
+            try {
+                while (true) {
+                    Capture capture = queue.take();
+                    if (capture == END) {
+                        return;
+                    }
+                    if (known.add(capture.puzzle)) {
+                        writer.write(capture.puzzle + "," + capture.solution + "," + capture.nanos + "," + capture.nodes);
+                        writer.newLine();
+                        captured.increment();
+                    }
+                    if (queue.isEmpty()) {
+                        writer.flush();
+                    }
+                }
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            writeError = e;
+            queue.clear(); // stop capturing; close() reports the error
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A slow puzzle waiting to be written
+     */
+    private static class Capture {
+        private String puzzle;
+        private String solution;
+        private long nanos;
+        private long nodes;
+
+        private Capture(String puzzle, String solution, long nanos, long nodes) {
+            this.puzzle = puzzle;
+            this.solution = solution;
+            this.nanos = nanos;
+            this.nodes = nodes;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+import java.io.IOException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects per-puzzle solve latencies and outcome counters from any number of solver threads.
+ * Each thread records into its own LatencyHistogram, so the hot path never contends on a lock;
+ * the per-thread histograms are only merged when a report is requested.
+ * Reports use the Prometheus text exposition format so a long-running service can serve them as-is.
+ */
+public class SolverMetrics {
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private CopyOnWriteArrayList<LatencyHistogram> recorders;
+    private ThreadLocal<LatencyHistogram> recorder;
+    private LongAdder solved;
+    private LongAdder failed;
+    private LongAdder invalid;
+    private long startTime;
+
+    public SolverMetrics() {
+        this.recorders = new CopyOnWriteArrayList<LatencyHistogram>();
+        this.recorder = ThreadLocal.withInitial(() -> {
+            LatencyHistogram histogram = new LatencyHistogram();
+            recorders.add(histogram);
+            return histogram;
+        });
+        this.solved = new LongAdder();
+        this.failed = new LongAdder();
+        this.invalid = new LongAdder();
+        this.startTime = System.nanoTime();
+    }
+
+    /**
+     * Gets the calling thread's histogram. Solver threads should look this up once and keep it
+     * @return the histogram owned by the calling thread
+     */
+    public LatencyHistogram recorder() {
+        return recorder.get();
+    }
+
+    /**
+     * Records one solve into the calling thread's histogram and counts its outcome
+     * @param histogram the calling thread's histogram, from recorder()
+     * @param nanos the time spent in solve()
+     * @param status one of BatchSolver.STATUS_SOLVED, STATUS_FAILED, or STATUS_INVALID
+     */
+    public void record(LatencyHistogram histogram, long nanos, byte status) {
+        histogram.record(nanos);
+        if (status == BatchSolver.STATUS_SOLVED) {
+            solved.increment();
+        } else if (status == BatchSolver.STATUS_FAILED) {
+            failed.increment();
+        } else {
+            invalid.increment();
+        }
+    }
+
+    /**
+     * Merges every thread's histogram into a new one
+     * @return a histogram holding every latency recorded so far
+     */
+    public LatencyHistogram snapshot() {
+        LatencyHistogram merged = new LatencyHistogram();
+        for (LatencyHistogram histogram : recorders) {
+            merged.add(histogram);
+        }
+        return merged;
+    }
+
+    /**
+     * Writes the latency quantiles, max, counters, and throughput in the Prometheus text exposition format
+     * @param out where to write the report
+     * @throws IOException if out cannot be written to
+     */
+    public void writePrometheus(Appendable out) throws IOException {
+        LatencyHistogram merged = snapshot();
+        double elapsedSeconds = (System.nanoTime() - startTime) / NANOS_PER_SECOND;
+        long total = solved.sum() + failed.sum() + invalid.sum();
+
+        out.append("# HELP sudoku_solve_latency_seconds Time spent solving one puzzle.\n");
+        out.append("# TYPE sudoku_solve_latency_seconds summary\n");
+        for (double quantile : QUANTILES) {
+            out.append("sudoku_solve_latency_seconds{quantile=\"").append(Double.toString(quantile)).append("\"} ")
+                    .append(seconds(merged.getValueAtPercentile(quantile * 100))).append('\n');
+        }
+        out.append("sudoku_solve_latency_seconds_sum ").append(seconds(merged.getSum())).append('\n');
+        out.append("sudoku_solve_latency_seconds_count ").append(Long.toString(merged.getTotalCount())).append('\n');
+
+        out.append("# HELP sudoku_solve_latency_max_seconds Longest time spent solving one puzzle.\n");
+        out.append("# TYPE sudoku_solve_latency_max_seconds gauge\n");
+        out.append("sudoku_solve_latency_max_seconds ").append(seconds(merged.getMax())).append('\n');
+
+        out.append("# HELP sudoku_puzzles_total Puzzles processed, by outcome.\n");
+        out.append("# TYPE sudoku_puzzles_total counter\n");
+        out.append("sudoku_puzzles_total{status=\"solved\"} ").append(Long.toString(solved.sum())).append('\n');
+        out.append("sudoku_puzzles_total{status=\"failed\"} ").append(Long.toString(failed.sum())).append('\n');
+        out.append("sudoku_puzzles_total{status=\"invalid\"} ").append(Long.toString(invalid.sum())).append('\n');
+
+        out.append("# HELP sudoku_throughput_puzzles_per_second Puzzles processed per second since the metrics were created.\n");
+        out.append("# TYPE sudoku_throughput_puzzles_per_second gauge\n");
+        out.append("sudoku_throughput_puzzles_per_second ")
+                .append(Double.toString(elapsedSeconds > 0 ? total / elapsedSeconds : 0)).append('\n');
+    }
+
+    /**
+     * Formats the p50, p90, p99, p99.9, and max latencies on one line for the console
+     * @return a short summary in milliseconds
+     */
+    public String summary() {
+        LatencyHistogram merged = snapshot();
+        return String.format("Latency (ms): p50 %.3f, p90 %.3f, p99 %.3f, p99.9 %.3f, max %.3f",
+                merged.getValueAtPercentile(50) / 1e6, merged.getValueAtPercentile(90) / 1e6,
+                merged.getValueAtPercentile(99) / 1e6, merged.getValueAtPercentile(99.9) / 1e6,
+                merged.getMax() / 1e6);
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / NANOS_PER_SECOND);
+    }
+}
@@ -0,0 +1,369 @@
+import java.util.Arrays;
+
+/**
+ * Stateful, incremental solving session for interactive play: the player places and clears values one at a time
+ * and asks for candidates, hints, and whether the board can still be solved.
+ * For every cell and value the session counts how many peers (cells in the same row, column, or box) hold that value,
+ * so placing or clearing a value only touches the peers of that cell. Every change is pushed on one trail, which undo() pops.
+ * Solvability is checked with a reused SudokuSolver and cached together with the solution it found;
+ * as long as the player only places values that agree with that solution, or clears values, no new search is needed.
+ */
+public class SudokuSession {
+    private int size;
+    private int sqrtSize;
+    private int cellCount;
+    private int[] values;
+    private boolean[] given;
+    private int[][] peers;
+    private int[][] units;
+
+    // conflicts[cell * size + (value - 1)] is the number of peers of cell holding value
+    private int[] conflicts;
+    private long[] candidateMasks;
+
+    private int[] trailCells;
+    private int[] trailValues;
+    private int trailSize;
+
+    private SudokuSolver solver;
+    private int[] solution;
+    private boolean solutionValid;
+    private boolean solvable;
+
+    /**
+     * Constructor for the SudokuSession class
+     * @param puzzle a square 2D array of integers representing the board, 0 for blanks; its values become fixed givens
+     * @throws IllegalArgumentException if the board's length is not a square or a value is out of range
+     */
+    public SudokuSession(int[][] puzzle) throws IllegalArgumentException {
+        this.size = puzzle.length;
+        if (Math.sqrt(size) != (int) Math.sqrt(size) || puzzle[0].length != size) {
+            throw new IllegalArgumentException("Size of the board must be a square");
+        }
+        this.sqrtSize = (int) Math.sqrt(size);
+        this.cellCount = size * size;
+        this.solver = new SudokuSolver(size);
+
+        this.values = new int[cellCount];
+        this.given = new boolean[cellCount];
+        this.conflicts = new int[cellCount * size];
+        this.candidateMasks = new long[cellCount];
+        this.solution = new int[cellCount];
+        this.trailCells = new int[16];
+        this.trailValues = new int[16];
+        initializePeersAndUnits();
+
+        long all = size == Long.SIZE ? -1L : (1L << size) - 1;
+        Arrays.fill(candidateMasks, all);
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                int value = puzzle[i][j];
+                if (value < 0 || value > size) {
+                    throw new IllegalArgumentException("Value at (" + i + ", " + j + ") must be between 0 and " + size);
+                }
+                if (value != 0) {
+                    given[i * size + j] = true;
+                    addValue(i * size + j, value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Places a value, replacing whatever the player had in the cell
+     * @param row
+     * @param col
+     * @param value a value between 1 and size
+     * @throws IllegalArgumentException if the cell is a given or the value is out of range
+     */
+    public void place(int row, int col, int value) throws IllegalArgumentException {
+        if (value < 1 || value > size) {
+            throw new IllegalArgumentException("Value must be between 1 and " + size);
+        }
+        int cell = editableCell(row, col);
+        if (values[cell] != value) {
+            pushTrail(cell, values[cell]);
+            setValue(cell, value);
+        }
+    }
+
+    /**
+     * Clears a cell the player filled in
+     * @param row
+     * @param col
+     * @throws IllegalArgumentException if the cell is a given
+     */
+    public void clear(int row, int col) throws IllegalArgumentException {
+        int cell = editableCell(row, col);
+        if (values[cell] != 0) {
+            pushTrail(cell, values[cell]);
+            setValue(cell, 0);
+        }
+    }
+
+    /**
+     * Reverts the most recent place() or clear()
+     * @return true if something was undone, false if there was nothing to undo
+     */
+    public boolean undo() {
+        if (trailSize == 0) {
+            return false;
+        }
+        trailSize--;
+        setValue(trailCells[trailSize], trailValues[trailSize]);
+        return true;
+    }
+
+    /**
+     * Gets the values no peer of an empty cell holds
+     * @param row
+     * @param col
+     * @return the candidate values in increasing order, or an empty array if the cell is filled
+     */
+    public int[] candidates(int row, int col) {
+        long mask = getCandidateMask(row, col);
+        int[] result = new int[Long.bitCount(mask)];
+        for (int k = 0; mask != 0; mask &= mask - 1) {
+            result[k++] = Long.numberOfTrailingZeros(mask) + 1;
+        }
+        return result;
+    }
+
+    /**
+     * Same as candidates(), but as a bit mask (bit value - 1 is set for each candidate) so it never allocates
+     * @param row
+     * @param col
+     * @return the candidate mask, or 0 if the cell is filled
+     */
+    public long getCandidateMask(int row, int col) {
+        int cell = cellIndex(row, col);
+        return values[cell] != 0 ? 0 : candidateMasks[cell];
+    }
+
+    /**
+     * Checks if the value in a cell repeats in its row, column, or box
+     * @param row
+     * @param col
+     * @return true if the cell is filled and a peer holds the same value
+     */
+    public boolean isConflicting(int row, int col) {
+        int cell = cellIndex(row, col);
+        return values[cell] != 0 && conflicts[cell * size + values[cell] - 1] > 0;
+    }
+
+    /**
+     * Suggests the next value to fill in: a cell with a single candidate if there is one, then a value with a single
+     * place in some row, column, or box, and otherwise the emptiest cell's value in a solution of the current board
+     * @return { row, col, value }, or null if the board is complete or can no longer be solved
+     */
+    public int[] nextHint() {
+        if (!isStillSolvable()) {
+            return null;
+        }
+
+        int best = -1;
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (values[cell] == 0) {
+                long mask = candidateMasks[cell];
+                if ((mask & (mask - 1)) == 0) {
+                    return hint(cell, Long.numberOfTrailingZeros(mask) + 1);
+                }
+                if (best == -1 || Long.bitCount(mask) < Long.bitCount(candidateMasks[best])) {
+                    best = cell;
+                }
+            }
+        }
+        if (best == -1) {
+            return null; // complete
+        }
+
+        for (int[] unit : units) {
+            for (int value = 1; value <= size; value++) {
+                long bit = 1L << (value - 1);
+                int place = -1;
+                int places = 0;
+                for (int cell : unit) {
+                    if (values[cell] == value) {
+                        places = 0;
+                        break;
+                    }
+                    if (values[cell] == 0 && (candidateMasks[cell] & bit) != 0) {
+                        place = cell;
+                        places++;
+                    }
+                }
+                if (places == 1) {
+                    return hint(place, value);
+                }
+            }
+        }
+
+        return hint(best, solution[best]);
+    }
+
+    /**
+     * Checks if the current board, including the player's values, can still be completed
+     * @return true if some solution agrees with every filled cell
+     */
+    public boolean isStillSolvable() {
+        if (solutionValid) {
+            return solvable;
+        }
+        solutionValid = true;
+        solvable = false;
+
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (values[cell] == 0 ? candidateMasks[cell] == 0 : conflicts[cell * size + values[cell] - 1] > 0) {
+                return false;
+            }
+        }
+
+        try {
+            solver.reset(values);
+            if (solver.solve()) {
+                int[][] solved = solver.getBoard();
+                for (int cell = 0; cell < cellCount; cell++) {
+                    solution[cell] = solved[cell / size][cell % size];
+                }
+                solvable = true;
+            }
+        } catch (Exception e) {
+            solvable = false;
+        }
+        return solvable;
+    }
+
+    /**
+     * Checks if every cell is filled without conflicts
+     * @return true if the puzzle is solved
+     */
+    public boolean isComplete() {
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (values[cell] == 0 || conflicts[cell * size + values[cell] - 1] > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets a copy of the current board
+     * @return a 2D array of the givens and the player's values, 0 for blanks
+     */
+    public int[][] getBoard() {
+        int[][] board = new int[size][size];
+        for (int cell = 0; cell < cellCount; cell++) {
+            board[cell / size][cell % size] = values[cell];
+        }
+        return board;
+    }
+
+    // MARK: - Helper methods for incremental updates
+
+    private void setValue(int cell, int value) {
+        int old = values[cell];
+        if (old != 0) {
+            removeValue(cell, old);
+        }
+        if (value != 0) {
+            addValue(cell, value);
+        }
+
+        // clearing a cell or agreeing with the cached solution keeps that solution valid
+        boolean keepsSolution = solutionValid && solvable && (value == 0 || value == solution[cell]);
+        if (!keepsSolution) {
+            solutionValid = false;
+        }
+    }
+
+    private void addValue(int cell, int value) {
+        values[cell] = value;
+        long bit = 1L << (value - 1);
+        for (int peer : peers[cell]) {
+            if (conflicts[peer * size + value - 1]++ == 0) {
+                candidateMasks[peer] &= ~bit;
+            }
+        }
+    }
+
+    private void removeValue(int cell, int value) {
+        values[cell] = 0;
+        long bit = 1L << (value - 1);
+        for (int peer : peers[cell]) {
+            if (--conflicts[peer * size + value - 1] == 0) {
+                candidateMasks[peer] |= bit;
+            }
+        }
+    }
+
+    private void pushTrail(int cell, int oldValue) {
+        if (trailSize == trailCells.length) {
+            trailCells = Arrays.copyOf(trailCells, trailSize * 2);
+            trailValues = Arrays.copyOf(trailValues, trailSize * 2);
+        }
+        trailCells[trailSize] = cell;
+        trailValues[trailSize] = oldValue;
+        trailSize++;
+    }
+
+    private int editableCell(int row, int col) throws IllegalArgumentException {
+        int cell = cellIndex(row, col);
+        if (given[cell]) {
+            throw new IllegalArgumentException("Cell (" + row + ", " + col + ") is a given and cannot be changed");
+        }
+        return cell;
+    }
+
+    private int cellIndex(int row, int col) throws IllegalArgumentException {
+        if (row < 0 || row >= size || col < 0 || col >= size) {
+            throw new IllegalArgumentException("Cell (" + row + ", " + col + ") is outside the board");
+        }
+        return row * size + col;
+    }
+
+    private int[] hint(int cell, int value) {
+        return new int[] { cell / size, cell % size, value };
+    }
+
+    /**
+     * Lists the peers of every cell and the cells of every row, column, and box
+     */
+    private void initializePeersAndUnits() {
+        this.units = new int[3 * size][size];
+        for (int k = 0; k < size; k++) {
+            int startRow = (k / sqrtSize) * sqrtSize;
+            int startCol = (k % sqrtSize) * sqrtSize;
+            for (int m = 0; m < size; m++) {
+                units[k][m] = k * size + m;
+                units[size + k][m] = m * size + k;
+                units[2 * size + k][m] = (startRow + m / sqrtSize) * size + startCol + m % sqrtSize;
+            }
+        }
+
+        int peerCount = 2 * (size - 1) + (sqrtSize - 1) * (sqrtSize - 1);
+        this.peers = new int[cellCount][peerCount];
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                int[] cellPeers = peers[row * size + col];
+                int count = 0;
+                for (int i = 0; i < size; i++) {
+                    if (i != row) {
+                        cellPeers[count++] = i * size + col;
+                    }
+                    if (i != col) {
+                        cellPeers[count++] = row * size + i;
+                    }
+                }
+                int startRow = (row / sqrtSize) * sqrtSize;
+                int startCol = (col / sqrtSize) * sqrtSize;
+                for (int i = startRow; i < startRow + sqrtSize; i++) {
+                    for (int j = startCol; j < startCol + sqrtSize; j++) {
+                        if (i != row && j != col) {
+                            cellPeers[count++] = i * size + j;
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -1,13 +1,33 @@
 // import java.util.Random;
-import java.util.ArrayList;
-import java.util.LinkedList;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class SudokuSolver {
     private int size;
     private int sqrtSize;
+    private int cellCount;
     private int[][] board;
-    private ArrayList<ArrayList<ArrayList<Integer>>> constraints;
-    private LinkedList<Arc> queue;
+    private int filled;
+    private long nodes;
+
+    // domains[cell] has bit (value - 1) set while value is still possible for the cell (row * size + col)
+    private long[] domains;
+    private int[][] peers;
+    private int[] queue;
+
+    // every domain change is pushed here so backtracking can undo it without copying the board
+    private int[] trailCells;
+    private long[] trailDomains;
+    private int trailSize;
+    private boolean propagated;
+
+    // optional; only set while a puzzle is being traced
+    private SearchTrace trace;
+    private int depth;
 
     /**
      * Default constructor for the SodukuSolver class that creates a 9x9 board
@@ -39,57 +59,79 @@ public class SudokuSolver {
      * @throws IllegalArgumentException if the board's length is not a square
      */
     public SudokuSolver(int[][] board) throws IllegalArgumentException {
-        this.board = new int[board.length][board.length];
-        for (int i = 0; i < board.length; i++) {
-            for (int j = 0; j < board.length; j++) {
-                this.board[i][j] = board[i][j];
-            }
-        }
-
-        this.size = board.length;
+        this(board.length);
+        reset(board);
+    }
 
-        if (Math.sqrt(size) != (int) Math.sqrt(size) || board[0].length != size) {
+    /**
+     * Constructor for the SodukuSolver class that creates an empty, reusable solver.
+     * Load a board with one of the reset methods before solving
+     * @param size the size of the board (i.e., 1 - size numbers per row, column, and box)
+     * @throws IllegalArgumentException if the size is not a square or is larger than 64
+     */
+    public SudokuSolver(int size) throws IllegalArgumentException {
+        if (size < 1 || Math.sqrt(size) != (int) Math.sqrt(size)) {
             throw new IllegalArgumentException("Size of the board must be a square");
-        } else {
-            this.sqrtSize = (int) Math.sqrt(size);
+        } else if (size > Long.SIZE) {
+            throw new IllegalArgumentException("Size of the board must be at most " + Long.SIZE);
         }
 
-        this.constraints = new ArrayList<ArrayList<ArrayList<Integer>>>(this.size);
+        this.size = size;
+        this.sqrtSize = (int) Math.sqrt(size);
+        this.cellCount = size * size;
+        this.board = new int[size][size];
+        this.domains = new long[cellCount];
+        this.queue = new int[cellCount];
+        this.trailCells = new int[cellCount * (size + 1)];
+        this.trailDomains = new long[cellCount * (size + 1)];
+        initializePeers();
+    }
 
-        for (int i = 0; i < this.size; i++) {
-            this.constraints.add(new ArrayList<ArrayList<Integer>>(this.size));
-            for (int j = 0; j < this.size; j++) {
-                this.constraints.get(i).add(new ArrayList<Integer>());
+    /**
+     * Loads a new board into this solver, reusing all of its memory
+     * @param board a square 2D array of integers with the same size as this solver, 0 for blanks
+     * @throws IllegalArgumentException if the board's size does not match
+     */
+    public void reset(int[][] board) throws IllegalArgumentException {
+        if (board.length != size || board[0].length != size) {
+            throw new IllegalArgumentException("Size of the board must be " + size);
+        }
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                this.board[i][j] = board[i][j];
             }
         }
+        resetDomains();
+    }
 
-        for (int i = 0; i < this.size; i++) {
-            for (int j = 0; j < this.size; j++) {
-                if (this.board[i][j] != 0) {
-                    this.constraints.get(i).get(j).add(this.board[i][j]);
-                } else {
-                    for (int k = 1; k <= this.size; k++) {
-                        this.constraints.get(i).get(j).add(k);
-                    }
-                }
-            }
+    /**
+     * Loads a new board into this solver from a flat, row-major array, reusing all of its memory
+     * @param cells size * size values, 0 for blanks
+     * @throws IllegalArgumentException if the number of cells does not match
+     */
+    public void reset(int[] cells) throws IllegalArgumentException {
+        if (cells.length != cellCount) {
+            throw new IllegalArgumentException("Board must have " + cellCount + " cells");
+        }
+        for (int cell = 0; cell < cellCount; cell++) {
+            board[cell / size][cell % size] = cells[cell];
         }
+        resetDomains();
     }
 
     /**
-     * Gets the neighboring arcs of every cell 
-     * @param i the row of the cell
-     * @param j the column of the cell
-     * @return an ArrayList of Arcs
+     * Loads a new board into this solver from a flat, row-major array, reusing all of its memory
+     * @param cells size * size values, 0 for blanks
+     * @throws IllegalArgumentException if the number of cells does not match
      */
-    private void initializeQueue() {
-        this.queue = new LinkedList<Arc>();
-        for (int i = 0; i < size; i++) {
-            for (int j = 0; j < size; j++) {
-                ArrayList<Arc> arcs = getAdjacentArcs(i, j);
-                queue.addAll(arcs);
-            }
+    public void reset(byte[] cells) throws IllegalArgumentException {
+        if (cells.length != cellCount) {
+            throw new IllegalArgumentException("Board must have " + cellCount + " cells");
+        }
+        for (int cell = 0; cell < cellCount; cell++) {
+            board[cell / size][cell % size] = cells[cell];
         }
+        resetDomains();
     }
 
     /**
@@ -114,30 +156,117 @@ public class SudokuSolver {
     //     }
     // }
 
+
     @Override
     public String toString() {
-        String outString = "";
+        return toString(board);
+    }
+
+    /**
+     * Renders any square board the same way as toString(), so every engine prints boards identically
+     * @param board a square 2D array of integers whose length is a square
+     * @return the rendered board
+     */
+    public static String toString(int[][] board) {
+        int size = board.length;
+        int sqrtSize = (int) Math.sqrt(size);
+        StringBuilder out = new StringBuilder((2 * size + 4 * sqrtSize) * (size + sqrtSize + 1));
+        try {
+            appendBoard(board, out);
+        } catch (IOException e) {
+            throw new AssertionError(e); // a StringBuilder never throws
+        }
+        return out.toString();
+    }
 
+    /**
+     * Renders the board the same way as toString(), but into an existing builder so it can be reused
+     * @param out the builder to append to
+     */
+    public void appendTo(StringBuilder out) {
+        try {
+            appendTo((Appendable) out);
+        } catch (IOException e) {
+            throw new AssertionError(e); // a StringBuilder never throws
+        }
+    }
+
+    /**
+     * Renders the board the same way as toString() into any Appendable, e.g. a Writer, one character at a time
+     * @param out where to write the board
+     * @throws IOException if out cannot be written to
+     */
+    public void appendTo(Appendable out) throws IOException {
+        appendBoard(board, out);
+    }
+
+    /**
+     * Renders any square board the same way as toString() into an Appendable, one character at a time
+     * @param board a square 2D array of integers whose length is a square
+     * @param out where to write the board
+     * @throws IOException if out cannot be written to
+     */
+    public static void appendBoard(int[][] board, Appendable out) throws IOException {
+        int size = board.length;
+        int sqrtSize = (int) Math.sqrt(size);
         for (int i = 0; i < size; i++) {
             if (i % sqrtSize == 0) {
-                for (int j = 0; j <= 2 * (size + sqrtSize); j++) {
-                    outString += "-";
-                }
-                outString += "\n";
+                appendDivider(size, sqrtSize, out);
+                out.append('\n');
             }
             for (int j = 0; j < size; j++) {
                     if (j % sqrtSize == 0) {
-                        outString += "| ";
+                        out.append('|').append(' ');
                     }
-                    outString += (board[i][j] == 0 ? " " : board[i][j]) + " ";
+                    int value = board[i][j];
+                    if (value == 0) {
+                        out.append(' ');
+                    } else {
+                        if (value >= 100) {
+                            out.append((char) ('0' + value / 100));
+                        }
+                        if (value >= 10) {
+                            out.append((char) ('0' + value / 10 % 10));
+                        }
+                        out.append((char) ('0' + value % 10));
+                    }
+                    out.append(' ');
             }
-            outString += "|\n";
+            out.append('|').append('\n');
         }
-        for (int j = 0; j <= 2 * (size + sqrtSize); j++) {
-            outString += "-";
+        appendDivider(size, sqrtSize, out);
+    }
+
+    public int[][] getBoard() {
+        return board;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Records the search events of runAC3() and runBacktrackingWithAC3() into a trace, or stops recording
+     * @param trace a trace for boards of this size, or null to stop tracing
+     * @throws IllegalArgumentException if the trace is for a different board size
+     */
+    public void setTrace(SearchTrace trace) throws IllegalArgumentException {
+        if (trace != null && trace.getSize() != size) {
+            throw new IllegalArgumentException("Trace must be for boards of size " + size);
         }
+        this.trace = trace;
+    }
 
-        return outString;
+    public SearchTrace getTrace() {
+        return trace;
+    }
+
+    /**
+     * Gets the number of search nodes (calls to a backtracking method) visited so far
+     * @return the number of nodes
+     */
+    public long getNodes() {
+        return nodes;
     }
 
     /**
@@ -146,8 +275,18 @@ public class SudokuSolver {
      * @return true if every cell is the same, false otherwise
      */
     public boolean equals(int[][] solutionBoard) {
-        for (int i = 0; i < size; i++) {
-            for (int j = 0; j < size; j++) {
+        return equals(board, solutionBoard);
+    }
+
+    /**
+     * Compares two boards of the same size cell by cell
+     * @param board the board to check
+     * @param solutionBoard the board to compare against
+     * @return true if every cell is the same, false otherwise
+     */
+    public static boolean equals(int[][] board, int[][] solutionBoard) {
+        for (int i = 0; i < board.length; i++) {
+            for (int j = 0; j < board.length; j++) {
                 if (board[i][j] != solutionBoard[i][j]) {
                     return false;
                 }
@@ -161,24 +300,14 @@ public class SudokuSolver {
      * @return true if the queue is empty, false otherwise
      */
     public boolean runAC3() {
-        initializeQueue();
-        while (!queue.isEmpty()) {
-            Arc arc = queue.remove();
-            int[] xiLocation = arc.getXiLocation();
-            int[] xjLocation = arc.getXjLocation();
-
-            ArrayList<Integer> xiDomList = constraints.get(xiLocation[0]).get(xiLocation[1]);
-            ArrayList<Integer> xjDomList = constraints.get(xjLocation[0]).get(xjLocation[1]);
-
-            if (revise(xiDomList, xjDomList)) {
-                if (xiDomList.isEmpty()) {
-                    return false;
-                }
-                ArrayList<Arc> arcs = getReversedAdjacentArcs(xiLocation[0], xiLocation[1]);
-                queue.addAll(arcs);
+        int tail = 0;
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (Long.bitCount(domains[cell]) == 1) {
+                queue[tail++] = cell;
             }
         }
-        return true;
+        propagated = true;
+        return propagate(tail);
     }
 
     /**
@@ -186,69 +315,48 @@ public class SudokuSolver {
      * @return true if the board is solved, false otherwise
      */
     public boolean runBacktrackingWithAC3() {
-        if (isValidSolution()) {
-            return true;
-        }
-
-        // make copies of the board and constraints to revert to on failure
-        int[][] boardCopy = new int[size][size];
-        for (int i = 0; i < size; i++) {
-            for (int j = 0; j < size; j++) {
-                boardCopy[i][j] = board[i][j];
+        nodes++;
+        if (isComplete()) {
+            if (trace != null) {
+                trace.solution(depth);
             }
+            return true;
         }
-
-        ArrayList<ArrayList<ArrayList<Integer>>> constraintsCopy = new ArrayList<ArrayList<ArrayList<Integer>>>(size);
-        for (int i = 0; i < size; i++) {
-            constraintsCopy.add(new ArrayList<ArrayList<Integer>>(size));
-            for (int j = 0; j < size; j++) {
-                constraintsCopy.get(i).add(new ArrayList<Integer>());
-                for (int k = 0; k < constraints.get(i).get(j).size(); k++) {
-                    constraintsCopy.get(i).get(j).add(constraints.get(i).get(j).get(k));
-                }
-            }
+        if (!propagated && !runAC3()) {
+            return false;
         }
 
-        int[] var = selectUnassignedVariable();
-        int row = var[0];
-        int col = var[1];
+        int cell = selectUnassignedVariable();
+        int row = cell / size;
+        int col = cell % size;
+        int mark = trailSize;
 
-        ArrayList<Integer> domain = constraints.get(var[0]).get(var[1]);
-        int domainSize = domain.size();
-        for (int i = 0; i < domainSize; i++) {
-            domain = constraints.get(var[0]).get(var[1]); // update domain since we changed memory location
-            int value = domain.get(i);
+        for (long remaining = domains[cell]; remaining != 0; remaining &= remaining - 1) {
+            int value = Long.numberOfTrailingZeros(remaining) + 1;
             if (isValidGuess(row, col, value)) {
-                board[row][col] = value;
-                removeOtherValuesFromDomain(row, col, value);
-                boolean inference = runAC3();
+                if (trace != null) {
+                    trace.choice(cell, value, depth);
+                }
+                assign(cell, value);
+                queue[0] = cell;
+                boolean inference = propagate(1);
 
                 if (inference) {
+                    depth++;
                     boolean result = runBacktrackingWithAC3();
+                    depth--;
                     if (result) {
                         return true;
                     }
                 }
+                unassign(cell);
             }
 
-            // remove changes made to board and constraints on failure
-            this.board = new int[size][size];
-            for (int j = 0; j < size; j++) {
-                for (int k = 0; k < size; k++) {
-                    this.board[j][k] = boardCopy[j][k];
-                }
-            }
-
-            this.constraints = new ArrayList<ArrayList<ArrayList<Integer>>>(size);
-            for (int j = 0; j < size; j++) {
-                this.constraints.add(new ArrayList<ArrayList<Integer>>(size));
-                for (int k = 0; k < size; k++) {
-                    this.constraints.get(j).add(new ArrayList<Integer>());
-                    for (int l = 0; l < constraintsCopy.get(j).get(k).size(); l++) {
-                        this.constraints.get(j).get(k).add(constraintsCopy.get(j).get(k).get(l));
-                    }
-                }
-            }
+            // remove changes made to the constraints on failure
+            undo(mark);
+        }
+        if (trace != null) {
+            trace.backtrack(cell, depth);
         }
         return false;
     }
@@ -258,66 +366,30 @@ public class SudokuSolver {
      * @return true if the board is solved, false otherwise
      */
     public boolean runBacktrackingWithoutAC3() {
-        if (isValidSolution()) {
+        nodes++;
+        if (isComplete()) {
             return true;
         }
 
-        // make copies of the board and constraints to revert to on failure
-        int[][] boardCopy = new int[size][size];
-        for (int i = 0; i < size; i++) {
-            for (int j = 0; j < size; j++) {
-                boardCopy[i][j] = board[i][j];
-            }
-        }
+        int cell = selectUnassignedVariable();
+        int row = cell / size;
+        int col = cell % size;
+        int mark = trailSize;
 
-        ArrayList<ArrayList<ArrayList<Integer>>> constraintsCopy = new ArrayList<ArrayList<ArrayList<Integer>>>(size);
-        for (int i = 0; i < size; i++) {
-            constraintsCopy.add(new ArrayList<ArrayList<Integer>>(size));
-            for (int j = 0; j < size; j++) {
-                constraintsCopy.get(i).add(new ArrayList<Integer>());
-                for (int k = 0; k < constraints.get(i).get(j).size(); k++) {
-                    constraintsCopy.get(i).get(j).add(constraints.get(i).get(j).get(k));
-                }
-            }
-        }
-
-        int[] var = selectUnassignedVariable();
-        int row = var[0];
-        int col = var[1];
-
-        ArrayList<Integer> domain = constraints.get(var[0]).get(var[1]);
-        int domainSize = domain.size();
-        for (int i = 0; i < domainSize; i++) {
-            domain = constraints.get(var[0]).get(var[1]); // update domain since we changed memory location
-            int value = domain.get(i);
+        for (long remaining = domains[cell]; remaining != 0; remaining &= remaining - 1) {
+            int value = Long.numberOfTrailingZeros(remaining) + 1;
             if (isValidGuess(row, col, value)) {
-                board[row][col] = value;
-                removeOtherValuesFromDomain(row, col, value);
+                assign(cell, value);
 
                 boolean result = runBacktrackingWithoutAC3();
                 if (result) {
                     return true;
                 }
+                unassign(cell);
             }
 
-            // remove changes made to board and constraints on failure
-            this.board = new int[size][size];
-            for (int j = 0; j < size; j++) {
-                for (int k = 0; k < size; k++) {
-                    this.board[j][k] = boardCopy[j][k];
-                }
-            }
-
-            this.constraints = new ArrayList<ArrayList<ArrayList<Integer>>>(size);
-            for (int j = 0; j < size; j++) {
-                this.constraints.add(new ArrayList<ArrayList<Integer>>(size));
-                for (int k = 0; k < size; k++) {
-                    this.constraints.get(j).add(new ArrayList<Integer>());
-                    for (int l = 0; l < constraintsCopy.get(j).get(k).size(); l++) {
-                        this.constraints.get(j).get(k).add(constraintsCopy.get(j).get(k).get(l));
-                    }
-                }
-            }
+            // remove changes made to the constraints on failure
+            undo(mark);
         }
         return false;
     }
@@ -346,111 +418,163 @@ public class SudokuSolver {
         }
     }
 
+    /**
+     * Same as solve(), but uses plain backtracking without AC-3 inference, mostly for comparing the two
+     * @return true if the board is solved, false otherwise
+     */
+    public boolean solveWithoutAC3() throws Exception {
+        if (!isValidStartingBoard()) {
+            throw new Exception("Invalid starting board");
+        } else {
+            return runBacktrackingWithoutAC3() && isValidSolution();
+        }
+    }
+
+    /**
+     * Lazily enumerates every solution of the board currently loaded, one at a time as the stream is consumed.
+     * The search is suspended between solutions, so memory stays the same however many solutions there are.
+     * This solver is not changed; the stream works on its own copy of the board.
+     * Use solutions().parallel() to spread the enumeration over several threads
+     * @return a stream of solutions as flat, row-major arrays of size * size values; empty if the board is inconsistent
+     */
+    public Stream<int[]> solutions() {
+        return StreamSupport.stream(solutionSpliterator(), false);
+    }
+
+    /**
+     * The spliterator behind solutions(). Splitting hands part of the untried values of the shallowest open branch
+     * to the new spliterator, so the top-level branches can be searched in parallel
+     * @return a spliterator over every solution of the board currently loaded
+     */
+    public Spliterator<int[]> solutionSpliterator() {
+        int[] puzzle = new int[cellCount];
+        for (int cell = 0; cell < cellCount; cell++) {
+            puzzle[cell] = board[cell / size][cell % size];
+        }
+        return new SolutionSpliterator(size, puzzle, new int[0], new int[0], -1, -1L, Long.MAX_VALUE);
+    }
+
     // MARK: - Helper method for solve
     private void assignRemainingVariables() {
         for (int i = 0; i < size; i++) {
             for (int j = 0; j < size; j++) {
                 if (board[i][j] == 0) {
-                    ArrayList<Integer> domain = constraints.get(i).get(j);
-                    if (domain.size() == 1) {
-                        board[i][j] = domain.get(0);
+                    long domain = domains[i * size + j];
+                    if (Long.bitCount(domain) == 1) {
+                        board[i][j] = Long.numberOfTrailingZeros(domain) + 1;
+                        filled++;
                     }
                 }
             }
         }
     }
 
-    // MARK: - Helper methods for AC3
+    // MARK: - Helper methods for reset
 
     /**
-     * Gets all arcs in the row, column, and box of the given cell
-     * @param row
-     * @param col
-     * @return an ArrayList of Arcs
+     * Rebuilds every domain from the board: a single value for assigned cells, every value for blanks
      */
-    private ArrayList<Arc> getAdjacentArcs(int row, int col) {
-        ArrayList<Arc> arcList = new ArrayList<Arc>();
-        for (int i = 0; i < size; i++ ) {
-            if (i != row) {
-                arcList.add(new Arc(row, col, i, col));
-            }
-            if (i != col) {
-                arcList.add(new Arc(row, col, row, i));
+    private void resetDomains() {
+        long all = size == Long.SIZE ? -1L : (1L << size) - 1;
+        filled = 0;
+        for (int cell = 0; cell < cellCount; cell++) {
+            int value = board[cell / size][cell % size];
+            if (value != 0) {
+                domains[cell] = 1L << (value - 1);
+                filled++;
+            } else {
+                domains[cell] = all;
             }
         }
-        int startRow = ((int) (row / sqrtSize)) * sqrtSize;
-        int startCol = ((int) (col / sqrtSize)) * sqrtSize;
+        trailSize = 0;
+        nodes = 0;
+        depth = 0;
+        propagated = false;
+    }
 
-        for (int i = startRow; i < startRow + sqrtSize; i++) {
-            for (int j = startCol; j < startCol + sqrtSize; j++) {
-                if (row != i && j != col) {
-                    arcList.add(new Arc(row, col, i, j));
-                }
-            }
-        }
-        return arcList;
-    }   
-    
     /**
-     * Gets all arcs in the row, column, and box of the given cell, but reversed
-     * @param row
-     * @param col
-     * @return an ArrayList of Arcs
+     * Lists the cells in the row, column, and box of every cell, once per solver
      */
-    private ArrayList<Arc> getReversedAdjacentArcs(int row, int col) {
-        ArrayList<Arc> arcList = new ArrayList<Arc>();
-        for (int i = 0; i < size; i++ ) {
-            if (i != row) {
-                arcList.add(new Arc(i, col, row, col));
-            }
-            if (i != col) {
-                arcList.add(new Arc(row, i, row, col));
-            }
-        }
-        int startRow = ((int) (row / 3)) * 3;
-        int startCol = ((int) (col / 3)) * 3;
-
-        for (int i = startRow; i < startRow + sqrtSize; i++) {
-            for (int j = startCol; j < startCol + sqrtSize; j++) {
-                if (row != i && j != col) {
-                    arcList.add(new Arc(i, j, row, col)); // this is what's different
+    private void initializePeers() {
+        int peerCount = 2 * (size - 1) + (sqrtSize - 1) * (sqrtSize - 1);
+        this.peers = new int[cellCount][peerCount];
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                int[] cellPeers = peers[row * size + col];
+                int count = 0;
+                for (int i = 0; i < size; i++) {
+                    if (i != row) {
+                        cellPeers[count++] = i * size + col;
+                    }
+                    if (i != col) {
+                        cellPeers[count++] = row * size + i;
+                    }
+                }
+                int startRow = (row / sqrtSize) * sqrtSize;
+                int startCol = (col / sqrtSize) * sqrtSize;
+                for (int i = startRow; i < startRow + sqrtSize; i++) {
+                    for (int j = startCol; j < startCol + sqrtSize; j++) {
+                        if (i != row && j != col) {
+                            cellPeers[count++] = i * size + j;
+                        }
+                    }
                 }
             }
         }
-        return arcList;
     }
-    
-    /*
-     * Revise the domain of Xi, comparing with Xj
-     * use arc to get these domains, then pass the domains in
+
+    // MARK: - Helper methods for AC3
+
+    /**
+     * Removes the value of every queued single-valued cell from the domains of its peers,
+     * queueing any peer that is left with a single value in turn
+     * @param tail the number of cells already in the queue
+     * @return false if some domain became empty, true otherwise
      */
-    private boolean revise(ArrayList<Integer> Xi, ArrayList<Integer> Xj) {
-        boolean revised = false;
-        if (Xj.size() == 1) {
-            if (Xi.contains(Xj.get(0))) {
-                Xi.remove(Xi.indexOf(Xj.get(0)));
-                revised = true;
+    private boolean propagate(int tail) {
+        int head = 0;
+        while (head < tail) {
+            int cell = queue[head++];
+            long value = domains[cell];
+            int[] cellPeers = peers[cell];
+            for (int k = 0; k < cellPeers.length; k++) {
+                int peer = cellPeers[k];
+                long domain = domains[peer];
+                if ((domain & value) != 0) {
+                    save(peer);
+                    domain &= ~value;
+                    domains[peer] = domain;
+                    if (domain == 0) {
+                        if (trace != null) {
+                            trace.wipeout(peer, depth);
+                        }
+                        return false;
+                    }
+                    if ((domain & (domain - 1)) == 0) {
+                        queue[tail++] = peer;
+                    }
+                }
             }
         }
-        return revised;
+        return true;
     }
 
     // MARK: - Helper methods for backtracking
 
     /**
      * Selects the next unassigned variable with the least number of possible values
-     * @return an array of size 2, where the first element is the row and the second element is the column
+     * @return the cell, i.e. row * size + col
      */
-    private int[] selectUnassignedVariable() {
+    private int selectUnassignedVariable() {
         // find the cell with the least number of possible values
-        int[] location = new int[2];
-        int min = 10;
-        for (int i = 0; i < size; i++) {
-            for (int j = 0; j < size; j++) {
-                if (board[i][j] == 0 && constraints.get(i).get(j).size() < min) {
-                    min = constraints.get(i).get(j).size();
-                    location[0] = i;
-                    location[1] = j;
+        int location = 0;
+        int min = size + 1;
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (board[cell / size][cell % size] == 0) {
+                int count = Long.bitCount(domains[cell]);
+                if (count < min) {
+                    min = count;
+                    location = cell;
                 }
             }
         }
@@ -458,14 +582,37 @@ public class SudokuSolver {
     }
 
     /**
-     * When a guess is made, this method removes all other possible values from the domain of the cell
-     * @param row
-     * @param col
+     * When a guess is made, this method assigns it on the board and removes all other possible values from the domain of the cell
+     * @param cell
      * @param value
      */
-    private void removeOtherValuesFromDomain(int row, int col, int value) {
-        constraints.get(row).get(col).clear();
-        constraints.get(row).get(col).add(value);
+    private void assign(int cell, int value) {
+        board[cell / size][cell % size] = value;
+        filled++;
+        save(cell);
+        domains[cell] = 1L << (value - 1);
+    }
+
+    private void unassign(int cell) {
+        board[cell / size][cell % size] = 0;
+        filled--;
+    }
+
+    private void save(int cell) {
+        trailCells[trailSize] = cell;
+        trailDomains[trailSize] = domains[cell];
+        trailSize++;
+    }
+
+    /**
+     * Restores every domain changed since the trail had the given size
+     * @param mark the trail size to go back to
+     */
+    private void undo(int mark) {
+        while (trailSize > mark) {
+            trailSize--;
+            domains[trailCells[trailSize]] = trailDomains[trailSize];
+        }
     }
 
     /**
@@ -476,7 +623,7 @@ public class SudokuSolver {
         for (int i = 0; i < this.size; i++) {
             for (int j = 0; j < this.size; j++) {
                 if (this.board[i][j] != 0) {
-                    boolean valid = isValidGuess(i, j, this.board[i][j]);
+                    boolean valid = this.board[i][j] > 0 && this.board[i][j] <= size && isValidGuess(i, j, this.board[i][j]);
                     if (!valid) {
                         return false;
                     }
@@ -491,10 +638,13 @@ public class SudokuSolver {
      * @return true if the board is solved with a valid solution, false otherwise
      */
     protected boolean isValidSolution() {
+        if (!isComplete()) {
+            return false;
+        }
         for (int i = 0; i < this.size; i++) {
             for (int j = 0; j < this.size; j++) {
                 boolean valid = isValidGuess(i, j, this.board[i][j]);
-                if (!isComplete() && !valid) {
+                if (!valid) {
                     return false;
                 }
             }
@@ -507,18 +657,11 @@ public class SudokuSolver {
      * @return true if every variable is assigned a value (i.e. not 0), false otherwise
      */
     private boolean isComplete() {
-        for (int i = 0; i < this.size; i++) {
-            for (int j = 0; j < this.size; j++) {
-                if (this.board[i][j] == 0) {
-                    return false;
-                }
-            }
-        }
-        return true;
+        return filled == cellCount;
     }
 
     private boolean isValidGuess(int row, int col, int num) {
-        return (notUsedInRow(row, col, num) && notUsedInCol(row, col, num) && notUsedInBox(row - row % this.sqrtSize, col - col % this.sqrtSize, row, col, num)); //| this.board[row][col] == num;
+        return (notUsedInRow(row, col, num) && notUsedInCol(row, col, num) && notUsedInBox(row - row % this.sqrtSize, col - col % this.sqrtSize, row, col, num));
     }
 
     private boolean notUsedInRow(int row, int col, int num) {
@@ -540,9 +683,9 @@ public class SudokuSolver {
     }
 
     private boolean notUsedInBox(int startRow, int startCol, int rowLoc, int colLoc, int num) {
-        for (int i = startRow; i < this.sqrtSize; i++) {
-            for (int j = startCol; j < this.sqrtSize; j++) {
-                if (this.board[i][j] == num && i != rowLoc && j != colLoc) {
+        for (int i = startRow; i < startRow + this.sqrtSize; i++) {
+            for (int j = startCol; j < startCol + this.sqrtSize; j++) {
+                if (this.board[i][j] == num && (i != rowLoc || j != colLoc)) {
                     return false;
                 }
             }
@@ -550,6 +693,217 @@ public class SudokuSolver {
         return true;
     }
 
+    private static void appendDivider(int size, int sqrtSize, Appendable out) throws IOException {
+        for (int j = 0; j <= 2 * (size + sqrtSize); j++) {
+            out.append('-');
+        }
+    }
+
+    /**
+     * Depth-first search over one part of the solution tree, with an explicit stack instead of recursion
+     * so it can stop after each solution and pick up again on the next call to tryAdvance().
+     * Frame k holds the cell branched on at depth k, the value currently assigned there (0 if none),
+     * the values not tried yet, and the trail size to undo to before trying the next one.
+     * A spliterator made by trySplit() replays the branch choices above its split point and then owns only the values
+     * it was given at that depth; frames above that point have no values left, so the search never leaves its subtree.
+     */
+    private static class SolutionSpliterator implements Spliterator<int[]> {
+        private int[] puzzle;
+        private int[] prefixCells;
+        private int[] prefixValues;
+        private int splitCell;
+        private long splitValues;
+        private long estimate;
+
+        private SudokuSolver search;
+        private boolean initialized;
+        private boolean pending; // the current board is a solution that has not been handed out yet
+        private int depth;
+        private int[] frameCells;
+        private int[] frameValues;
+        private long[] frameRemaining;
+        private int[] frameMarks;
+
+        /**
+         * @param size the size of the board
+         * @param puzzle the givens, shared read-only between every spliterator of one enumeration
+         * @param prefixCells the cells branched on above the split point
+         * @param prefixValues the values chosen for them
+         * @param splitCell the cell branched on at the split point, or -1 to pick it like the solver does
+         * @param splitValues the values of splitCell this spliterator owns
+         * @param estimate the estimated number of solutions
+         */
+        private SolutionSpliterator(int size, int[] puzzle, int[] prefixCells, int[] prefixValues,
+                int splitCell, long splitValues, long estimate) {
+            this.puzzle = puzzle;
+            this.prefixCells = prefixCells;
+            this.prefixValues = prefixValues;
+            this.splitCell = splitCell;
+            this.splitValues = splitValues;
+            this.estimate = estimate;
+            this.search = new SudokuSolver(size);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super int[]> action) {
+            if (!initialized) {
+                initialize();
+            }
+            if (!pending && !advance()) {
+                return false;
+            }
+            pending = false;
+
+            int size = search.size;
+            int[] solution = new int[search.cellCount];
+            for (int cell = 0; cell < solution.length; cell++) {
+                solution[cell] = search.board[cell / size][cell % size];
+            }
+            action.accept(solution);
+            return true;
+        }
+
+        @Override
+        public Spliterator<int[]> trySplit() {
+            if (!initialized) {
+                initialize();
+            }
+
+            // follow forced moves until some depth has a real choice left
+            while (depth >= 0 && !pending && frameValues[depth] == 0 && Long.bitCount(frameRemaining[depth]) == 1) {
+                if (next(depth) < 0) {
+                    break;
+                }
+            }
+
+            for (int f = 0; f <= depth; f++) {
+                long remaining = frameRemaining[f];
+                // give away the upper half of the untried values, keeping at least one unless a value is being searched
+                int count = frameValues[f] != 0 ? (Long.bitCount(remaining) + 1) / 2 : Long.bitCount(remaining) / 2;
+                if (count > 0) {
+                    long given = 0;
+                    for (int k = count; k > 0; k--) {
+                        long highest = Long.highestOneBit(remaining);
+                        given |= highest;
+                        remaining &= ~highest;
+                    }
+                    frameRemaining[f] = remaining;
+                    estimate >>>= 1;
+                    return new SolutionSpliterator(search.size, puzzle, Arrays.copyOf(frameCells, f),
+                            Arrays.copyOf(frameValues, f), frameCells[f], given, estimate);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public long estimateSize() {
+            return estimate;
+        }
+
+        @Override
+        public int characteristics() {
+            return DISTINCT | NONNULL | IMMUTABLE;
+        }
+
+        /**
+         * Loads the givens, replays the branch choices above the split point, and opens the frame at the split point
+         */
+        private void initialize() {
+            initialized = true;
+            int cellCount = search.cellCount;
+            frameCells = new int[cellCount + 1];
+            frameValues = new int[cellCount + 1];
+            frameRemaining = new long[cellCount + 1];
+            frameMarks = new int[cellCount + 1];
+            depth = -1;
+
+            search.reset(puzzle);
+            if (!search.isValidStartingBoard() || !search.runAC3()) {
+                return;
+            }
+            for (int f = 0; f < prefixCells.length; f++) {
+                frameCells[f] = prefixCells[f];
+                frameValues[f] = prefixValues[f];
+                frameMarks[f] = search.trailSize;
+                search.assign(prefixCells[f], prefixValues[f]);
+                search.queue[0] = prefixCells[f];
+                search.propagate(1);
+            }
+            depth = prefixCells.length - 1;
+
+            if (search.isComplete()) {
+                pending = true; // the givens already fill the board
+                return;
+            }
+            int cell = splitCell >= 0 ? splitCell : search.selectUnassignedVariable();
+            depth++;
+            frameCells[depth] = cell;
+            frameValues[depth] = 0;
+            frameRemaining[depth] = search.domains[cell] & splitValues;
+            frameMarks[depth] = search.trailSize;
+        }
+
+        /**
+         * Backtracks and descends until the board holds the next solution
+         * @return true if there is one, false once this spliterator's subtree is exhausted
+         */
+        private boolean advance() {
+            while (depth >= 0) {
+                int f = depth;
+                if (frameValues[f] != 0) {
+                    search.unassign(frameCells[f]);
+                    search.undo(frameMarks[f]);
+                    frameValues[f] = 0;
+                }
+                if (frameRemaining[f] == 0) {
+                    depth--;
+                } else if (next(f) > 0) {
+                    pending = false;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Tries the lowest untried value of a frame that has no value assigned
+         * @param f the frame
+         * @return 1 if the board is now a solution, 0 if a deeper frame was opened, -1 if the value failed
+         */
+        private int next(int f) {
+            long remaining = frameRemaining[f];
+            frameRemaining[f] = remaining & (remaining - 1);
+            int cell = frameCells[f];
+            int value = Long.numberOfTrailingZeros(remaining) + 1;
+            if (!search.isValidGuess(cell / search.size, cell % search.size, value)) {
+                return -1;
+            }
+
+            search.nodes++;
+            search.assign(cell, value);
+            search.queue[0] = cell;
+            if (!search.propagate(1)) {
+                search.unassign(cell);
+                search.undo(frameMarks[f]);
+                return -1;
+            }
+            frameValues[f] = value;
+            if (search.isComplete()) {
+                pending = true;
+                return 1;
+            }
+
+            int child = search.selectUnassignedVariable();
+            depth = f + 1;
+            frameCells[depth] = child;
+            frameValues[depth] = 0;
+            frameRemaining[depth] = search.domains[child];
+            frameMarks[depth] = search.trailSize;
+            return 0;
+        }
+    }
+
     // MARK: - Helper methods for generateBoard
 
     /**